@@ -0,0 +1,121 @@
+package org.example;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+// Runs many commands in one JVM instead of starting a process per command:
+//   mycli -c "cd logs; grep ERROR app.log"   commands separated by ';'
+//   mycli -f nightly.cli                     one or more commands per line, '#' starts a comment
+//   generate-commands | mycli                stdin, when it is not a terminal
+// Commands run exactly as if they were typed, just without the prompt, and stop at exit. The time each
+// command took is printed as a summary on stderr at the end, so stdout only carries their output;
+// past MAX_LISTED commands only the count and the total are kept.
+public class BatchRunner {
+
+    private static final int MAX_LISTED = 1000; // Commands listed one by one in the summary
+
+    // How long one command took
+    record Timing(String command, long nanos) {
+    }
+
+    private final List<Timing> timings = new ArrayList<>(); // The first MAX_LISTED
+    private long commands = 0;
+    private long totalNanos = 0;
+
+    static void main(String[] args) {
+        BatchRunner batch = new BatchRunner();
+        try {
+            if (args.length == 0) {
+                batch.run(Stream.generate(MyCLI::readInputLine).takeWhile(Objects::nonNull).iterator());
+            } else if (args.length == 2 && args[0].equals("-c")) {
+                batch.run(List.of(args[1]).iterator());
+            } else if (args.length == 2 && args[0].equals("-f")) {
+                try (BufferedReader reader = Files.newBufferedReader(MyCLI.currentDir.resolve(args[1]), StandardCharsets.UTF_8)) {
+                    batch.run(reader.lines().iterator()); // Read as the script runs, it may be long
+                }
+            } else {
+                System.out.println("Usage: mycli [-c \"<command>; <command>\"] [-f <script>]");
+                return;
+            }
+        } catch (IOException e) {
+            System.out.println("Error: Could not read script. " + e.getMessage());
+        } catch (UncheckedIOException e) {
+            System.out.println("Error: Could not read script. " + e.getCause().getMessage());
+        }
+        batch.printSummary(System.err);
+    }
+
+    // Run every command of the lines; false when the batch ended with exit
+    boolean run(Iterator<String> lines) {
+        while (lines.hasNext()) {
+            List<CommandLine.Statement> statements;
+            try {
+                statements = CommandLine.parse(lines.next());
+            } catch (IllegalArgumentException e) {
+                Session.current().out().println("Error: " + e.getMessage());
+                continue;
+            }
+            for (CommandLine.Statement statement : statements) {
+                long start = System.nanoTime();
+                boolean more = MyCLI.execute(statement);
+                long nanos = System.nanoTime() - start;
+                if (timings.size() < MAX_LISTED) {
+                    timings.add(new Timing(statement.text(), nanos));
+                }
+                commands++;
+                totalNanos += nanos;
+                if (!more) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    List<Timing> timings() {
+        return timings;
+    }
+
+    void printSummary(PrintStream err) {
+        if (commands == 0) {
+            return;
+        }
+        err.println("Command timings:");
+        for (Timing timing : timings) {
+            err.printf("%10.1f ms  %s%n", timing.nanos() / 1e6, timing.command());
+        }
+        if (commands > timings.size()) {
+            err.printf("%13s  %d more commands not listed%n", "...", commands - timings.size());
+        }
+        err.printf("%10.1f ms  total for %d commands%n", totalNanos / 1e6, commands);
+    }
+
+    // Whether stdin is a terminal, which makes mycli interactive. System.console() is null as soon as
+    // stdout is redirected too, so "mycli > session.log" would not prompt; on Linux the link of file
+    // descriptor 0 tells about stdin alone.
+    static boolean stdinIsTerminal() {
+        Boolean terminal = isTerminal(Paths.get("/proc/self/fd/0"));
+        return terminal != null ? terminal : System.console() != null;
+    }
+
+    // Whether the file descriptor link points to a terminal device, null when it cannot be read
+    static Boolean isTerminal(Path descriptor) {
+        try {
+            String target = Files.readSymbolicLink(descriptor).toString();
+            return target.startsWith("/dev/pts/") || target.startsWith("/dev/tty") || target.equals("/dev/console");
+        } catch (IOException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+}
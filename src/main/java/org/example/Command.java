@@ -0,0 +1,25 @@
+package org.example;
+
+// A command of the CLI. The built-in commands are registered by MyCLI; further commands are plugins:
+// a jar on the classpath that names its implementations in META-INF/services/org.example.Command is
+// found by CommandRegistry at startup. A command runs for Session.current() and writes its output
+// to the session, through Output.stdout() for anything longer than a few lines.
+public interface Command {
+
+    // The word that runs the command
+    String name();
+
+    // args[0] is the name, the rest are the arguments: already split, unquoted and, unless the command
+    // expands them itself, with globs and braces expanded. Pipes and redirections are already handled.
+    void execute(String[] args) throws Exception;
+
+    // Whether glob patterns in the arguments are left for the command, which expands them lazily
+    default boolean expandsOwnArguments() {
+        return false;
+    }
+
+    // A line for help, e.g. "  mycmd <file> - What it does", or null
+    default String help() {
+        return null;
+    }
+}
@@ -0,0 +1,198 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// A command line parsed once, in a single pass over its characters, into what the CLI runs:
+//   line      = statement (';' statement)*
+//   statement = command ('|' command)*
+//   command   = word+, with an optional '> file' or '>> file'
+// 'single quotes' keep everything literally, "double quotes" too except for \" and \\, and a
+// backslash outside quotes escapes the next character. Words with anything quoted or escaped are not
+// expanded as globs. ';', '|', '>' and '>>' need no spaces around them, and an unquoted '#' at the
+// start of a word begins a comment. Every stage of a pipeline is parsed with the rest of the line, so
+// no command splits its arguments again.
+public final class CommandLine {
+
+    private CommandLine() {
+    }
+
+    // One argument, and whether expansion has to leave it alone
+    record Word(String text, boolean quoted) {
+    }
+
+    record Redirect(Word target, boolean append) {
+    }
+
+    // A command with its arguments; words.get(0) is the name
+    record Command(List<Word> words, Redirect redirect) {
+        String name() {
+            return words.get(0).text();
+        }
+
+        // The words as the String[] commands take, the name first
+        String[] args() {
+            String[] args = new String[words.size()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = words.get(i).text();
+            }
+            return args;
+        }
+    }
+
+    // Commands connected by pipes, and the text they were parsed from
+    record Statement(String text, List<Command> pipeline) {
+    }
+
+    static List<Statement> parse(String line) {
+        Parser parser = new Parser();
+        int start = 0; // Of the current statement
+        StringBuilder word = new StringBuilder();
+        boolean inWord = false;
+        boolean quoted = false;
+        int length = line.length();
+        int i = 0;
+        while (i < length) {
+            char c = line.charAt(i);
+            if (c == '\'') {
+                int end = line.indexOf('\'', i + 1);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unterminated quote: '");
+                }
+                word.append(line, i + 1, end);
+                inWord = quoted = true;
+                i = end + 1;
+            } else if (c == '"') {
+                i++;
+                while (i < length && line.charAt(i) != '"') {
+                    char inner = line.charAt(i);
+                    if (inner == '\\' && i + 1 < length && (line.charAt(i + 1) == '"' || line.charAt(i + 1) == '\\')) {
+                        inner = line.charAt(++i);
+                    }
+                    word.append(inner);
+                    i++;
+                }
+                if (i == length) {
+                    throw new IllegalArgumentException("Unterminated quote: \"");
+                }
+                inWord = quoted = true;
+                i++;
+            } else if (c == '\\' && i + 1 < length) {
+                word.append(line.charAt(i + 1));
+                inWord = quoted = true;
+                i += 2;
+            } else if (Character.isWhitespace(c) || c == ';' || c == '|' || c == '>' || (c == '#' && !inWord)) {
+                if (inWord) {
+                    parser.word(new Word(word.toString(), quoted));
+                    word.setLength(0);
+                    inWord = quoted = false;
+                }
+                if (c == '#') {
+                    break; // Comment until the end of the line
+                }
+                if (c == ';') {
+                    parser.endStatement(line.substring(start, i).trim());
+                    start = i + 1;
+                } else if (c == '|') {
+                    parser.pipe();
+                } else if (c == '>') {
+                    boolean append = i + 1 < length && line.charAt(i + 1) == '>';
+                    parser.redirect(append);
+                    i += append ? 1 : 0;
+                }
+                i++;
+            } else {
+                word.append(c);
+                inWord = true;
+                i++;
+            }
+        }
+        if (inWord) {
+            parser.word(new Word(word.toString(), quoted));
+        }
+        parser.endStatement(line.substring(start, i).trim());
+        return parser.statements;
+    }
+
+    // A command line that has already been split into tokens, where "|", ">", ">>" and ";" are
+    // operators; for callers that hand commands their arguments as an array
+    static List<Statement> parse(String[] tokens) {
+        Parser parser = new Parser();
+        List<String> text = new ArrayList<>();
+        for (String token : tokens) {
+            if (token.equals(";")) {
+                parser.endStatement(String.join(" ", text));
+                text.clear();
+                continue;
+            }
+            text.add(token);
+            if (token.equals("|")) {
+                parser.pipe();
+            } else if (token.equals(">") || token.equals(">>")) {
+                parser.redirect(token.equals(">>"));
+            } else {
+                parser.word(new Word(token, false));
+            }
+        }
+        parser.endStatement(String.join(" ", text));
+        return parser.statements;
+    }
+
+    // Builds the statements from the words and operators the tokenizer finds
+    private static final class Parser {
+        final List<Statement> statements = new ArrayList<>();
+        private final List<Command> pipeline = new ArrayList<>();
+        private List<Word> words = new ArrayList<>();
+        private Redirect redirect;
+        private boolean expectTarget = false;
+        private boolean append = false;
+
+        void word(Word word) {
+            if (expectTarget) {
+                redirect = new Redirect(word, append);
+                expectTarget = false;
+            } else {
+                words.add(word);
+            }
+        }
+
+        void redirect(boolean append) {
+            if (expectTarget || redirect != null) {
+                throw new IllegalArgumentException("Only one output redirection per command.");
+            }
+            this.append = append;
+            expectTarget = true;
+        }
+
+        void pipe() {
+            if (words.isEmpty()) {
+                throw new IllegalArgumentException("Missing command before |");
+            }
+            endCommand();
+        }
+
+        void endStatement(String text) {
+            if (words.isEmpty()) {
+                if (!pipeline.isEmpty()) {
+                    throw new IllegalArgumentException("Missing command after |");
+                }
+                if (expectTarget || redirect != null) {
+                    throw new IllegalArgumentException("Missing command before >");
+                }
+                return; // Nothing between two ';', or a blank line
+            }
+            endCommand();
+            statements.add(new Statement(text, List.copyOf(pipeline)));
+            pipeline.clear();
+        }
+
+        private void endCommand() {
+            if (expectTarget) {
+                throw new IllegalArgumentException("Missing file name after >");
+            }
+            pipeline.add(new Command(List.copyOf(words), redirect));
+            words = new ArrayList<>();
+            redirect = null;
+        }
+    }
+}
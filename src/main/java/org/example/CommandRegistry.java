@@ -0,0 +1,64 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+// Commands by name: the built-in ones of MyCLI, then plugins found with ServiceLoader. Built once,
+// on first use, and never changed afterwards, so every session looks commands up without locking.
+// A plugin cannot replace a built-in command.
+public class CommandRegistry {
+
+    // The body of a built-in command, usually a method of MyCLI
+    interface Body {
+        void execute(String[] args) throws Exception;
+    }
+
+    record Builtin(String name, Body body, boolean expandsOwnArguments) implements Command {
+        @Override
+        public void execute(String[] args) throws Exception {
+            body.execute(args);
+        }
+    }
+
+    private static volatile CommandRegistry instance;
+
+    private final Map<String, Command> commands = new HashMap<>();
+    private final List<Command> plugins = new ArrayList<>();
+
+    private CommandRegistry() {
+        for (Command command : MyCLI.builtinCommands()) {
+            commands.put(command.name(), command);
+        }
+        for (Command command : ServiceLoader.load(Command.class)) {
+            if (commands.putIfAbsent(command.name(), command) == null) {
+                plugins.add(command);
+            }
+        }
+    }
+
+    static CommandRegistry get() {
+        CommandRegistry registry = instance;
+        if (registry == null) {
+            synchronized (CommandRegistry.class) {
+                if (instance == null) {
+                    instance = new CommandRegistry();
+                }
+                registry = instance;
+            }
+        }
+        return registry;
+    }
+
+    // The command of that name, or null
+    Command find(String name) {
+        return commands.get(name);
+    }
+
+    // Commands added by plugins, in the order they were found
+    List<Command> plugins() {
+        return plugins;
+    }
+}
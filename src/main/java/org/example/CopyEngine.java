@@ -0,0 +1,274 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Copies files and trees with FileChannel.transferTo, which lets the kernel move the bytes
+// (copy_file_range or sendfile on Linux) without passing them through the Java heap.
+// Large files are copied in chunks so progress can be reported between them. Used by mv when a
+// rename is not possible because source and destination are on different filesystems, and by cp,
+// which copies a tree in parallel with one ForkJoin task per directory and per file and records
+// finished files and chunks in a CopyJournal so an interrupted copy can be resumed.
+public class CopyEngine {
+
+    static final long CHUNK_SIZE = 16L * 1024 * 1024;
+
+    // Called after every chunk with the bytes copied so far
+    interface Progress {
+        void copied(Path file, long done, long total);
+    }
+
+    static final Progress NO_PROGRESS = (file, done, total) -> {
+    };
+
+    private final Progress progress;
+
+    CopyEngine(Progress progress) {
+        this.progress = progress;
+    }
+
+    // Copy src to dest and then delete src; a partial copy is removed when the copy fails
+    void move(Path src, Path dest) throws IOException {
+        boolean existed = Files.exists(dest, LinkOption.NOFOLLOW_LINKS);
+        try {
+            copy(src, dest);
+        } catch (IOException e) {
+            if (!existed) {
+                deleteTree(dest);
+            }
+            throw e;
+        }
+        deleteTree(src);
+    }
+
+    // Copy a file, a symbolic link or a whole directory tree
+    void copy(Path src, Path dest) throws IOException {
+        Files.walkFileTree(src, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
+                Files.createDirectories(dest.resolve(src.relativize(dir)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                Path target = dest.resolve(src.relativize(file));
+                if (attributes.isRegularFile()) {
+                    copyFile(file, target);
+                } else {
+                    // Symbolic links are recreated, not followed
+                    Files.copy(file, target, LinkOption.NOFOLLOW_LINKS, StandardCopyOption.REPLACE_EXISTING);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                if (e != null) {
+                    throw e;
+                }
+                // After the contents, which would change the modification time again
+                copyAttributes(dir, dest.resolve(src.relativize(dir)));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    // Copy one regular file in chunks of CHUNK_SIZE, keeping its modification time and permissions
+    void copyFile(Path src, Path dest) throws IOException {
+        copyFile(src, dest, 0, null, null);
+    }
+
+    // Copy src from offset start on (the bytes before it are already in dest), journaling every chunk
+    // of a large file once it is on disk. Returns the number of bytes copied.
+    private long copyFile(Path src, Path dest, long start, CopyJournal journal, String relative) throws IOException {
+        long position = start;
+        try (FileChannel in = FileChannel.open(src, StandardOpenOption.READ);
+             FileChannel out = start > 0
+                     ? FileChannel.open(dest, StandardOpenOption.WRITE)
+                     : FileChannel.open(dest, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                             StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            out.position(position);
+            while (position < size) {
+                long copied = in.transferTo(position, Math.min(CHUNK_SIZE, size - position), out);
+                if (copied <= 0) {
+                    break; // The source shrank while it was being copied
+                }
+                position += copied;
+                if (journal != null && size > CHUNK_SIZE) {
+                    out.force(false); // The checkpoint may only name bytes that are really stored
+                    journal.chunkDone(relative, position, size);
+                }
+                progress.copied(src, position, size);
+            }
+            out.truncate(position); // Drop anything past the end left by an earlier attempt
+        }
+        copyAttributes(src, dest);
+        return position - start;
+    }
+
+    // Totals of a cp
+    static class Summary {
+        final AtomicLong files = new AtomicLong(); // Files copied in this run
+        final AtomicLong bytes = new AtomicLong(); // Bytes copied in this run
+        final AtomicLong skipped = new AtomicLong(); // Files already copied by an earlier, interrupted run
+        final Queue<String> errors = new ConcurrentLinkedQueue<>();
+    }
+
+    // Copy a file or a whole tree to dest on the given number of threads, skipping what the journal
+    // says is already done. Failures are collected in the summary and do not stop the other files.
+    Summary copyParallel(Path src, Path dest, int threads, CopyJournal journal) {
+        Summary summary = new Summary();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new CopyTask(src, dest, ".", journal, summary));
+        } finally {
+            pool.shutdown();
+        }
+        return summary;
+    }
+
+    private class CopyTask extends RecursiveAction {
+        private final Path source;
+        private final Path target;
+        private final String relative; // Path of source within the copied tree, "." for its root
+        private final CopyJournal journal;
+        private final Summary summary;
+
+        CopyTask(Path source, Path target, String relative, CopyJournal journal, Summary summary) {
+            this.source = source;
+            this.target = target;
+            this.relative = relative;
+            this.journal = journal;
+            this.summary = summary;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                if (attributes.isDirectory()) {
+                    copyDirectory();
+                } else if (attributes.isRegularFile()) {
+                    copyRegularFile(attributes.size());
+                } else {
+                    Files.copy(source, target, LinkOption.NOFOLLOW_LINKS, StandardCopyOption.REPLACE_EXISTING);
+                    summary.files.incrementAndGet();
+                }
+            } catch (IOException e) {
+                summary.errors.add(source + ": " + e.getMessage());
+            }
+        }
+
+        private void copyDirectory() throws IOException {
+            Files.createDirectories(target);
+            List<CopyTask> children = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(source)) {
+                for (Path child : stream) {
+                    String name = child.getFileName().toString();
+                    children.add(new CopyTask(child, target.resolve(name),
+                            relative.equals(".") ? name : relative + "/" + name, journal, summary));
+                }
+            }
+            invokeAll(children);
+            copyAttributes(source, target); // After the contents, which would change the modification time again
+        }
+
+        private void copyRegularFile(long size) throws IOException {
+            if (journal.isDone(relative) && Files.isRegularFile(target) && Files.size(target) == size) {
+                summary.skipped.incrementAndGet();
+                return;
+            }
+            long start = journal.resumeOffset(relative, size);
+            if (start > 0 && (!Files.isRegularFile(target) || Files.size(target) < start)) {
+                start = 0; // The partial copy is gone
+            }
+            summary.bytes.addAndGet(copyFile(source, target, start, journal, relative));
+            journal.fileDone(relative);
+            summary.files.incrementAndGet();
+        }
+    }
+
+    private static void copyAttributes(Path src, Path dest) throws IOException {
+        Files.setLastModifiedTime(dest, Files.getLastModifiedTime(src));
+        try {
+            Files.setPosixFilePermissions(dest, Files.getPosixFilePermissions(src));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX filesystem
+        }
+    }
+
+    // Options given to cp, e.g. "cp -r release /mnt/staging" or "cp --parallel 16 dist/*.jar out"
+    static class Options {
+        boolean recursive = false; // -r
+        int threads = Runtime.getRuntime().availableProcessors() * 2; // --parallel N, copies mostly wait on I/O
+        final List<String> sources = new ArrayList<>();
+        String destination;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            List<String> operands = new ArrayList<>();
+            for (int i = 1; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("-r") || arg.equals("-R")) {
+                    options.recursive = true;
+                } else if (arg.equals("--parallel")) {
+                    options.threads = DirectoryLister.Options.parseCount(args, i++);
+                    if (options.threads < 1) {
+                        throw new IllegalArgumentException("Invalid thread count for --parallel: " + args[i]);
+                    }
+                } else if (arg.startsWith("-") && arg.length() > 1) {
+                    throw new IllegalArgumentException("Invalid option for cp: " + arg);
+                } else {
+                    operands.add(arg);
+                }
+            }
+            if (operands.size() < 2) {
+                throw new IllegalArgumentException("Usage: cp [-r] [--parallel N] <source...> <dest>");
+            }
+            options.sources.addAll(operands.subList(0, operands.size() - 1));
+            options.destination = operands.get(operands.size() - 1);
+            return options;
+        }
+    }
+
+    // Delete a file or a directory with everything in it
+    static void deleteTree(Path root) throws IOException {
+        if (!Files.exists(root, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                if (e != null) {
+                    throw e;
+                }
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
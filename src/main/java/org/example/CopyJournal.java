@@ -0,0 +1,131 @@
+package org.example;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Checkpoint journal of a cp, kept next to the copy as "<target>.cp-journal" and deleted once the copy
+// is complete. It is a text file with one line per event, appended as the copy goes:
+//   mycli-cp 1 <source>         header, the journal is ignored when the source differs
+//   P <offset> <size> <path>    the first offset bytes of path (size bytes in total) are on disk
+//   D <path>                    path is completely copied
+// Paths are relative to the source. When cp runs again after an interruption, finished files are
+// skipped and partly copied large files continue from their last checkpoint.
+public class CopyJournal implements Closeable {
+
+    private static final String HEADER = "mycli-cp 1 ";
+
+    private final Path file;
+    private final Set<String> done = new HashSet<>();
+    private final Map<String, long[]> partial = new HashMap<>(); // Path to {offset, size}
+    private final BufferedWriter writer;
+
+    private CopyJournal(Path file, Path source, boolean resume) throws IOException {
+        this.file = file;
+        if (resume) {
+            this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+            writer.newLine(); // The last line may have been cut off in the middle
+        } else {
+            this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+            writer.write(HEADER + source);
+            writer.newLine();
+            writer.flush();
+        }
+    }
+
+    // Journal for copying source to target, picking up an earlier journal for the same source
+    static CopyJournal open(Path source, Path target) throws IOException {
+        List<String> lines = readJournal(source, target);
+        if (lines != null) {
+            CopyJournal journal = new CopyJournal(fileOf(target), source, true);
+            journal.load(lines);
+            return journal;
+        }
+        return new CopyJournal(fileOf(target), source.toAbsolutePath().normalize(), false);
+    }
+
+    // Whether an interrupted copy of source to target left a journal behind
+    static boolean isResumable(Path source, Path target) throws IOException {
+        return readJournal(source, target) != null;
+    }
+
+    private static Path fileOf(Path target) {
+        return target.resolveSibling(target.getFileName() + ".cp-journal");
+    }
+
+    // Lines of the journal for this copy, or null when there is none
+    private static List<String> readJournal(Path source, Path target) throws IOException {
+        Path file = fileOf(target);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        boolean matches = !lines.isEmpty() && lines.get(0).equals(HEADER + source.toAbsolutePath().normalize());
+        return matches ? lines : null;
+    }
+
+    private void load(List<String> lines) {
+        for (String line : lines.subList(1, lines.size())) {
+            try {
+                if (line.startsWith("D ")) {
+                    String path = line.substring(2);
+                    done.add(path);
+                    partial.remove(path);
+                } else if (line.startsWith("P ")) {
+                    String[] fields = line.split(" ", 4);
+                    partial.put(fields[3], new long[]{Long.parseLong(fields[1]), Long.parseLong(fields[2])});
+                }
+            } catch (RuntimeException e) {
+                // A line cut off by the interruption, everything before it still counts
+            }
+        }
+    }
+
+    int doneCount() {
+        return done.size();
+    }
+
+    boolean isDone(String path) {
+        return done.contains(path);
+    }
+
+    // Offset to continue a file of the given size from; 0 when it has to be copied from the start
+    long resumeOffset(String path, long size) {
+        long[] checkpoint = partial.get(path);
+        return checkpoint != null && checkpoint[1] == size ? checkpoint[0] : 0;
+    }
+
+    synchronized void chunkDone(String path, long offset, long size) throws IOException {
+        append("P " + offset + " " + size + " " + path);
+    }
+
+    synchronized void fileDone(String path) throws IOException {
+        append("D " + path);
+    }
+
+    private void append(String line) throws IOException {
+        writer.write(line);
+        writer.newLine();
+        writer.flush(); // Each line must survive the process being killed
+    }
+
+    // The copy is complete, the journal is no longer needed
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(file);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,206 @@
+package org.example;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// mycli --daemon: keeps one JVM running on a Unix domain socket so that each command costs a socket
+// round trip instead of a JVM start, with the JIT warm and the metadata cache filled.
+// Every connection is a session with its own current directory. A client sends command lines, as it
+// would type them or as in a script (';' separates commands), and the output of each command is
+// streamed back as it is produced. The connection is closed after exit or when the client stops
+// sending. A first line "@cwd <dir>" sets the directory the session starts in, otherwise it starts in
+// the directory of the daemon. Any client that can write to a socket works, e.g.
+//   echo "ls -l; du -s" | socat - UNIX-CONNECT:/tmp/mycli-$USER.sock
+// Commands run on the connection's thread with its Session bound, so sessions run concurrently.
+// Error output of a command, such as copy progress, goes to the client together with its output.
+public class Daemon implements AutoCloseable {
+
+    private static final String CWD = "@cwd ";
+
+    private final Path socket;
+    private final AtomicInteger sessions = new AtomicInteger();
+    private ServerSocketChannel server;
+
+    Daemon(Path socket) {
+        this.socket = socket;
+    }
+
+    static void main(String[] args) {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        try (Daemon daemon = new Daemon(options.socket)) {
+            daemon.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(daemon::close));
+            System.out.println("Listening on " + options.socket);
+            daemon.serve();
+        } catch (IOException e) {
+            System.out.println("Error: Could not run the daemon on " + options.socket + ". " + e.getMessage());
+        }
+    }
+
+    // The socket a daemon of this user listens on unless told otherwise
+    static Path defaultSocket() {
+        return Paths.get(System.getProperty("java.io.tmpdir"), "mycli-" + System.getProperty("user.name") + ".sock");
+    }
+
+    void start() throws IOException {
+        UnixDomainSocketAddress address = UnixDomainSocketAddress.of(socket);
+        if (Files.exists(socket)) {
+            if (isListening(address)) {
+                throw new IOException("Another daemon is already listening.");
+            }
+            Files.delete(socket); // Left behind by a daemon that was killed
+        }
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(address);
+    }
+
+    private static boolean isListening(UnixDomainSocketAddress address) {
+        try {
+            SocketChannel.open(address).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Accept clients until the daemon is closed, each on its own thread
+    void serve() throws IOException {
+        while (true) {
+            SocketChannel client;
+            try {
+                client = server.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            }
+            Thread thread = new Thread(() -> session(client), "mycli-session-" + sessions.incrementAndGet());
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private void session(SocketChannel client) {
+        try (client;
+             Scanner in = new Scanner(input(client), StandardCharsets.UTF_8);
+             PrintStream out = new PrintStream(new BufferedOutputStream(output(client)), false, StandardCharsets.UTF_8)) {
+            Session session = new Session(MyCLI.currentDir, out, out, in);
+            for (String line; (line = session.readLine()) != null; ) {
+                if (line.startsWith(CWD)) {
+                    session.setDirectory(session.directory().resolve(line.substring(CWD.length()).trim()).normalize());
+                    continue;
+                }
+                List<CommandLine.Statement> statements;
+                try {
+                    statements = CommandLine.parse(line);
+                } catch (IllegalArgumentException e) {
+                    out.println("Error: " + e.getMessage());
+                    out.flush();
+                    continue;
+                }
+                for (CommandLine.Statement statement : statements) {
+                    boolean more = session.call(() -> MyCLI.execute(statement));
+                    out.flush();
+                    if (!more || out.checkError()) {
+                        return; // exit, or the client went away
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Session ended: " + e.getMessage());
+        }
+    }
+
+    // Straight on the channel, as DaemonClient does: the streams of Channels hold the channel's blocking
+    // lock while they block, so a command waiting for input (tail -f watching for a line) would stop
+    // its own output from being written
+    private static InputStream input(SocketChannel client) {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                return length == 0 ? 0 : client.read(ByteBuffer.wrap(bytes, offset, length));
+            }
+        };
+    }
+
+    private static OutputStream output(SocketChannel client) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+                while (buffer.hasRemaining()) {
+                    client.write(buffer);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (server != null) {
+                server.close();
+            }
+            Files.deleteIfExists(socket);
+        } catch (IOException e) {
+            // Stopping anyway
+        }
+    }
+
+    // Options of "mycli --daemon [--socket <path>]" and "mycli --connect [--socket <path>] [-c <commands> | -f <script>]"
+    static class Options {
+        Path socket = defaultSocket();
+        String commands; // -c
+        Path script; // -f
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 1; i < args.length; i++) {
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                if (args[i].equals("--socket")) {
+                    options.socket = Paths.get(args[++i]);
+                } else if (args[i].equals("-c")) {
+                    options.commands = args[++i];
+                } else if (args[i].equals("-f")) {
+                    options.script = MyCLI.currentDir.resolve(args[++i]);
+                } else {
+                    throw new IllegalArgumentException("Invalid option for " + args[0] + ": " + args[i]);
+                }
+            }
+            return options;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+// mycli --connect: sends commands to a running daemon and copies what comes back to stdout.
+// The commands are those of -c, the lines of a -f script, or stdin, which is forwarded as it is
+// read so the client also works interactively. The session starts in the client's directory.
+public class DaemonClient {
+
+    private DaemonClient() {
+    }
+
+    static void main(String[] args) {
+        Daemon.Options options;
+        try {
+            options = Daemon.Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(options.socket))) {
+            Thread reader = new Thread(() -> copyOutput(channel), "mycli-client-output");
+            reader.start();
+
+            send(channel, "@cwd " + MyCLI.currentDir + "\n");
+            if (options.commands != null) {
+                send(channel, options.commands.replace('\n', ';') + "\n");
+            } else if (options.script != null) {
+                send(channel, Files.readString(options.script, StandardCharsets.UTF_8) + "\n");
+            } else {
+                byte[] buffer = new byte[8192];
+                for (int read; (read = System.in.read(buffer)) >= 0; ) {
+                    send(channel, ByteBuffer.wrap(buffer, 0, read));
+                }
+            }
+            channel.shutdownOutput(); // The daemon ends the session once it has run everything
+
+            reader.join();
+        } catch (IOException e) {
+            System.out.println("Error: Could not talk to the daemon on " + options.socket + ". " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Straight on the channel: the streams of Channels lock the channel while they block, so a
+    // stream reading the output would stop the commands from being written
+    private static void send(SocketChannel channel, String text) throws IOException {
+        send(channel, ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static void send(SocketChannel channel, ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    private static void copyOutput(SocketChannel channel) {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        try {
+            while (channel.read(buffer) >= 0) {
+                System.out.write(buffer.array(), 0, buffer.position());
+                System.out.flush();
+                buffer.clear();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
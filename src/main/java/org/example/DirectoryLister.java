@@ -0,0 +1,340 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SecureDirectoryStream;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+// The ls command for directories of any size.
+// Without sorting, entries are printed while the directory is being read, so nothing is collected.
+// With --top K only the K best entries are kept in a heap while reading. Attributes for -l, -S and -t
+// are read with a single readAttributes call per entry, relative to the open directory when the
+// platform supports it (SecureDirectoryStream), instead of one lookup per property.
+// ls -R reads the tree in parallel with TreeWalker and prints it directory by directory.
+// When the MetadataCache is enabled, small directories are remembered with their attributes and
+// listed again from memory.
+public class DirectoryLister {
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private final Options options;
+    private final Output out;
+    private List<Entry> recording; // Every entry read so far, for the MetadataCache
+
+    DirectoryLister(Options options, Output out) {
+        this.options = options;
+        this.out = out;
+    }
+
+    // One directory entry with its attributes, when they were needed
+    static class Entry {
+        final Path name;
+        final BasicFileAttributes attributes;
+
+        Entry(Path name, BasicFileAttributes attributes) {
+            this.name = name;
+            this.attributes = attributes;
+        }
+    }
+
+    void list(Path directory) throws IOException {
+        if (options.recursive) {
+            listTree(directory);
+            return;
+        }
+
+        List<Entry> cached = MetadataCache.listing(directory);
+        if (cached != null) {
+            List<Entry> visible = new ArrayList<>();
+            for (Entry entry : cached) {
+                if (isVisible(entry.name)) {
+                    visible.add(entry);
+                }
+            }
+            arrange(visible).forEach(this::print);
+            return;
+        }
+
+        Comparator<Entry> order = order();
+        boolean needsAttributes = options.longFormat || options.bySize || options.byTime;
+        recording = MetadataCache.isEnabled() ? new ArrayList<>() : null;
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            if (order == null) {
+                if (options.reverse) {
+                    // Reversing the directory order needs every entry first
+                    List<Entry> entries = new ArrayList<>();
+                    readEntries(stream, needsAttributes, entries::add);
+                    Collections.reverse(entries);
+                    entries.forEach(this::print);
+                } else {
+                    readEntries(stream, needsAttributes, this::print); // Streaming, nothing is kept
+                }
+            } else if (options.top > 0) {
+                // Keep the K best entries; the head of the heap is the worst of them
+                PriorityQueue<Entry> best = new PriorityQueue<>(options.top + 1, order.reversed());
+                readEntries(stream, needsAttributes, entry -> {
+                    best.add(entry);
+                    if (best.size() > options.top) {
+                        best.poll();
+                    }
+                });
+                List<Entry> entries = new ArrayList<>(best);
+                entries.sort(order);
+                entries.forEach(this::print);
+            } else {
+                List<Entry> entries = new ArrayList<>();
+                readEntries(stream, needsAttributes, entries::add);
+                entries.sort(order);
+                entries.forEach(this::print);
+            }
+        }
+        if (recording != null) {
+            MetadataCache.putListing(directory, recording);
+            recording = null;
+        }
+    }
+
+    // ls -R: every directory under a "path:" header, subdirectories in the order they are listed
+    private void listTree(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            throw new NotDirectoryException(directory.toString());
+        }
+        TreeWalker walker = new TreeWalker(options.parallelism, options.maxDepth, Integer.MAX_VALUE, options.all, true);
+        TreeWalker.Node root = walker.walk(directory);
+        Path displayRoot = Paths.get(options.directory == null ? "." : options.directory);
+        printTree(root, displayRoot, true);
+        for (String error : walker.errors()) {
+            out.println("Error listing directory: " + error);
+        }
+    }
+
+    private void printTree(TreeWalker.Node node, Path display, boolean first) {
+        if (!first) {
+            out.println("");
+        }
+        out.println(display + ":");
+        List<Entry> entries = arrange(node.entries);
+        entries.forEach(this::print);
+
+        Map<Path, TreeWalker.Node> children = new HashMap<>();
+        for (TreeWalker.Node child : node.children) {
+            children.put(child.path.getFileName(), child);
+        }
+        for (Entry entry : entries) {
+            TreeWalker.Node child = children.get(entry.name);
+            if (child != null) {
+                printTree(child, display.resolve(entry.name), false);
+            }
+        }
+    }
+
+    // The entries of one directory in the requested order, cut to --top K
+    private List<Entry> arrange(List<Entry> entries) {
+        List<Entry> arranged = new ArrayList<>(entries);
+        Comparator<Entry> order = order();
+        if (order != null) {
+            arranged.sort(order);
+        } else if (options.reverse) {
+            Collections.reverse(arranged);
+        }
+        if (options.top > 0 && arranged.size() > options.top) {
+            return arranged.subList(0, options.top);
+        }
+        return arranged;
+    }
+
+    // Sort order asked for, or null to keep the directory order
+    private Comparator<Entry> order() {
+        Comparator<Entry> order;
+        if (options.bySize) {
+            order = Comparator.comparingLong((Entry entry) -> entry.attributes.size()).reversed(); // Largest first
+        } else if (options.byTime) {
+            order = Comparator.comparing((Entry entry) -> entry.attributes.lastModifiedTime()).reversed(); // Newest first
+        } else if (options.top > 0) {
+            order = Comparator.comparing(entry -> entry.name.toString());
+        } else {
+            return null;
+        }
+        return options.reverse ? order.reversed() : order;
+    }
+
+    interface EntryAction {
+        void accept(Entry entry) throws IOException;
+    }
+
+    void readEntries(DirectoryStream<Path> stream, boolean needsAttributes, EntryAction action) throws IOException {
+        SecureDirectoryStream<Path> secure = stream instanceof SecureDirectoryStream
+                ? (SecureDirectoryStream<Path>) stream : null;
+        for (Path path : stream) {
+            Path name = path.getFileName();
+            boolean visible = isVisible(name);
+            if (!visible && recording == null) {
+                continue;
+            }
+            BasicFileAttributes attributes = null;
+            if (needsAttributes || recording != null) {
+                try {
+                    attributes = readAttributes(secure, path);
+                } catch (IOException e) {
+                    continue; // Removed while we were reading the directory
+                }
+            }
+            Entry entry = new Entry(name, attributes);
+            if (recording != null) {
+                recording.add(entry);
+                if (recording.size() > MetadataCache.MAX_LISTING_SIZE) {
+                    recording = null; // Too large to cache, keep streaming
+                }
+            }
+            if (visible) {
+                action.accept(entry);
+            }
+        }
+    }
+
+    // Hidden files are only shown with -a
+    private boolean isVisible(Path name) {
+        return options.all || !name.toString().startsWith(".");
+    }
+
+    // Everything -l needs in one call, relative to the open directory when possible
+    static BasicFileAttributes readAttributes(SecureDirectoryStream<Path> secure, Path path) throws IOException {
+        if (secure != null) {
+            PosixFileAttributeView view = secure.getFileAttributeView(path.getFileName(),
+                    PosixFileAttributeView.class, LinkOption.NOFOLLOW_LINKS);
+            if (view != null) {
+                return view.readAttributes();
+            }
+        }
+        try {
+            return Files.readAttributes(path, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (UnsupportedOperationException e) {
+            return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        }
+    }
+
+    private void print(Entry entry) {
+        if (!options.longFormat) {
+            out.println(entry.name.toString());
+            return;
+        }
+        out.println(format(entry));
+    }
+
+    // Long listing line: type and permissions, size, modification time, name
+    static String format(Entry entry) {
+        BasicFileAttributes attributes = entry.attributes;
+        char type = attributes.isDirectory() ? 'd' : attributes.isSymbolicLink() ? 'l' : '-';
+        String permissions = attributes instanceof PosixFileAttributes
+                ? PosixFilePermissions.toString(((PosixFileAttributes) attributes).permissions())
+                : "?????????";
+        LocalDateTime modified = LocalDateTime.ofInstant(attributes.lastModifiedTime().toInstant(), ZoneId.systemDefault());
+        return String.format("%c%s %12d %s %s", type, permissions, attributes.size(), TIME_FORMAT.format(modified), entry.name);
+    }
+
+    // Options given to ls, e.g. "ls -la", "ls logs -S --top 20" or "ls -t -r"
+    static class Options {
+        boolean all = false; // -a
+        boolean reverse = false; // -r
+        boolean longFormat = false; // -l
+        boolean bySize = false; // -S
+        boolean byTime = false; // -t
+        int top = 0; // --top K, 0 for all entries
+        boolean recursive = false; // -R
+        int maxDepth = Integer.MAX_VALUE; // --max-depth N, only with -R
+        int parallelism = Runtime.getRuntime().availableProcessors(); // --parallel N, only with -R
+        String directory = null;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 1; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--top")) {
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("Missing entry count for --top");
+                    }
+                    try {
+                        options.top = Integer.parseInt(args[++i]);
+                    } catch (NumberFormatException e) {
+                        options.top = 0;
+                    }
+                    if (options.top < 1) {
+                        throw new IllegalArgumentException("Invalid entry count for --top: " + args[i]);
+                    }
+                } else if (arg.equals("--max-depth") || arg.equals("--parallel")) {
+                    int value = parseCount(args, i++);
+                    if (arg.equals("--max-depth")) {
+                        options.maxDepth = value;
+                    } else if (value < 1) {
+                        throw new IllegalArgumentException("Invalid thread count for --parallel: " + value);
+                    } else {
+                        options.parallelism = value;
+                    }
+                } else if (arg.startsWith("-") && arg.length() > 1) {
+                    for (char flag : arg.substring(1).toCharArray()) {
+                        switch (flag) {
+                            case 'a':
+                                options.all = true;
+                                break;
+                            case 'r':
+                                options.reverse = true;
+                                break;
+                            case 'l':
+                                options.longFormat = true;
+                                break;
+                            case 'S':
+                                options.bySize = true;
+                                break;
+                            case 't':
+                                options.byTime = true;
+                                break;
+                            case 'R':
+                                options.recursive = true;
+                                break;
+                            default:
+                                throw new IllegalArgumentException("Invalid option for ls: " + arg);
+                        }
+                    }
+                } else {
+                    options.directory = arg;
+                }
+            }
+            return options;
+        }
+
+        // Non-negative number following the option at args[i]
+        static int parseCount(String[] args, int i) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            try {
+                int value = Integer.parseInt(args[i + 1]);
+                if (value >= 0) {
+                    return value;
+                }
+            } catch (NumberFormatException e) {
+                // Reported below
+            }
+            throw new IllegalArgumentException("Invalid value for " + args[i] + ": " + args[i + 1]);
+        }
+    }
+}
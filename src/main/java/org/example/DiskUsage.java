@@ -0,0 +1,142 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+// The du command: size of a directory tree, read in parallel by TreeWalker.
+// Sizes are the apparent sizes of the files (what ls -l shows), in KiB rounded up or, with -h, in the
+// largest fitting unit. Like GNU du, subdirectories are printed before their parent and --max-depth
+// only limits what is printed, the totals always cover the whole tree. --timing adds how long each
+// directory took to read and lists the slowest directories of the walk.
+public class DiskUsage {
+
+    private final Options options;
+    private final Output out;
+
+    DiskUsage(Options options, Output out) {
+        this.options = options;
+        this.out = out;
+    }
+
+    void run(Path path, String display) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        if (!attributes.isDirectory()) {
+            out.println(formatSize(attributes.size()) + "\t" + display);
+            return;
+        }
+
+        long start = System.nanoTime();
+        TreeWalker walker = new TreeWalker(options.parallelism, Integer.MAX_VALUE, printDepth(), true, false);
+        TreeWalker.Node root = walker.walk(path);
+        long elapsed = System.nanoTime() - start;
+
+        for (String error : walker.errors()) {
+            out.println("du: cannot read directory " + error);
+        }
+        print(root, display);
+
+        if (options.timing) {
+            out.println("Scanned " + (root.directories + 1) + " directories and " + root.files + " files in "
+                    + millis(elapsed) + " ms");
+            out.println("Slowest directories:");
+            for (TreeWalker.Timing timing : walker.slowest()) {
+                out.println("  " + millis(timing.nanos()) + " ms\t" + timing.path());
+            }
+        }
+    }
+
+    private int printDepth() {
+        return options.summarize ? 0 : options.maxDepth;
+    }
+
+    // Children first, then the directory itself
+    private void print(TreeWalker.Node node, String display) {
+        for (TreeWalker.Node child : node.children) {
+            print(child, display + "/" + child.path.getFileName());
+        }
+        String line = formatSize(node.bytes) + "\t" + display;
+        if (options.timing) {
+            line += "\t(read " + millis(node.listNanos) + " ms, subtree " + millis(node.subtreeNanos) + " ms)";
+        }
+        out.println(line);
+    }
+
+    String formatSize(long bytes) {
+        if (!options.human) {
+            return String.valueOf((bytes + 1023) / 1024);
+        }
+        return humanSize(bytes);
+    }
+
+    // 512, 1.5K, 20M: one decimal below 10 units, like du -h
+    static String humanSize(long bytes) {
+        if (bytes < 1024) {
+            return String.valueOf(bytes);
+        }
+        String units = "KMGTPE";
+        double value = bytes;
+        int unit = -1;
+        while (value >= 1024 && unit < units.length() - 1) {
+            value /= 1024;
+            unit++;
+        }
+        if (value < 10) {
+            return String.format("%.1f%c", Math.ceil(value * 10) / 10, units.charAt(unit));
+        }
+        return String.format("%d%c", (long) Math.ceil(value), units.charAt(unit));
+    }
+
+    private static long millis(long nanos) {
+        return nanos / 1_000_000;
+    }
+
+    // Options given to du, e.g. "du -sh logs" or "du --max-depth 1 --timing /mnt/share"
+    static class Options {
+        boolean summarize = false; // -s
+        boolean human = false; // -h
+        boolean timing = false; // --timing
+        int maxDepth = Integer.MAX_VALUE; // --max-depth N
+        int parallelism = Runtime.getRuntime().availableProcessors(); // --parallel N
+        final List<String> paths = new ArrayList<>();
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 1; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--max-depth")) {
+                    options.maxDepth = DirectoryLister.Options.parseCount(args, i++);
+                } else if (arg.equals("--parallel")) {
+                    options.parallelism = DirectoryLister.Options.parseCount(args, i++);
+                    if (options.parallelism < 1) {
+                        throw new IllegalArgumentException("Invalid thread count for --parallel: " + args[i]);
+                    }
+                } else if (arg.equals("--timing")) {
+                    options.timing = true;
+                } else if (arg.startsWith("-") && arg.length() > 1 && !arg.startsWith("--")) {
+                    for (char flag : arg.substring(1).toCharArray()) {
+                        if (flag == 's') {
+                            options.summarize = true;
+                        } else if (flag == 'h') {
+                            options.human = true;
+                        } else {
+                            throw new IllegalArgumentException("Invalid option for du: " + arg);
+                        }
+                    }
+                } else if (arg.startsWith("-") && arg.length() > 1) {
+                    throw new IllegalArgumentException("Invalid option for du: " + arg);
+                } else {
+                    options.paths.add(arg);
+                }
+            }
+            if (options.paths.isEmpty()) {
+                options.paths.add(".");
+            }
+            return options;
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package org.example;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+// Sort for the sort command and the sort stage of a pipeline, for inputs larger than the heap.
+// Lines are collected until the memory budget (-S) is used up; the chunk is then sorted and written to
+// a temporary run file on a worker thread while the next chunk fills, so chunks are sorted on several
+// cores at once. Input that fits the budget never touches the disk and is sorted with parallelSort.
+// At the end the runs are merged through a heap holding the current line of each run, reading every
+// run front to back once; with more than MAX_MERGE_WIDTH runs, groups of them are first merged into
+// larger runs so the number of open files stays bounded.
+// The sort key, and the number of -n, is computed once per line instead of on every comparison.
+public class ExternalSort implements Pipeline.Stage, Closeable {
+
+    private static final long DEFAULT_MEMORY = 64L * 1024 * 1024; // -S default
+    private static final int MAX_MERGE_WIDTH = 64; // Runs merged at once
+    private static final int LINE_OVERHEAD = 96; // Estimated bytes per line besides its characters
+
+    // Options given to sort, e.g. "sort -rn -k 3 access.log" or "sort -u -S 512M -T /data/tmp big.log"
+    static class Options {
+        boolean reverse = false; // -r
+        boolean numeric = false; // -n, compare the leading number of the key
+        boolean unique = false; // -u, keep one line of those with equal keys
+        int key = 0; // -k N, sort by the Nth whitespace-separated field; 0 for the whole line
+        long memory = DEFAULT_MEMORY; // -S size, with an optional K, M or G suffix
+        String tempDir = null; // -T dir, where runs are written; the system temp directory by default
+        int parallelism = Runtime.getRuntime().availableProcessors(); // --parallel N, chunks sorted at once
+        Charset encoding = LineScanner.defaultCharset(); // --encoding name, of the files sorted
+        List<String> files = new ArrayList<>();
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 1; i < args.length; i++) {
+                String arg = args[i];
+                String value = null;
+                if (arg.length() > 2 && (arg.startsWith("-k") || arg.startsWith("-S") || arg.startsWith("-T"))) {
+                    value = arg.substring(2); // Attached, as in -k2 or -S512M
+                    arg = arg.substring(0, 2);
+                }
+                if (arg.equals("-k") || arg.equals("-S") || arg.equals("-T") || arg.equals("--parallel")
+                        || arg.equals("--encoding")) {
+                    if (value == null) {
+                        if (i + 1 >= args.length) {
+                            throw new IllegalArgumentException("Missing value for " + arg);
+                        }
+                        value = args[++i];
+                    }
+                    if (arg.equals("-k")) {
+                        options.key = parsePositive(arg, value);
+                    } else if (arg.equals("-S")) {
+                        options.memory = parseSize(value);
+                    } else if (arg.equals("-T")) {
+                        options.tempDir = value;
+                    } else if (arg.equals("--encoding")) {
+                        options.encoding = LineScanner.charset(value);
+                    } else {
+                        options.parallelism = parsePositive(arg, value);
+                    }
+                } else if (arg.startsWith("-") && arg.length() > 1) {
+                    for (char flag : arg.substring(1).toCharArray()) {
+                        switch (flag) {
+                            case 'r':
+                                options.reverse = true;
+                                break;
+                            case 'n':
+                                options.numeric = true;
+                                break;
+                            case 'u':
+                                options.unique = true;
+                                break;
+                            default:
+                                throw new IllegalArgumentException("Invalid option for sort: " + arg);
+                        }
+                    }
+                } else {
+                    options.files.add(arg);
+                }
+            }
+            return options;
+        }
+
+        private static int parsePositive(String option, String value) {
+            try {
+                int number = Integer.parseInt(value);
+                if (number > 0) {
+                    return number;
+                }
+            } catch (NumberFormatException e) {
+                // Reported below
+            }
+            throw new IllegalArgumentException("Invalid value for " + option + ": " + value);
+        }
+
+        static long parseSize(String value) {
+            String digits = value;
+            long unit = 1;
+            char suffix = Character.toUpperCase(value.isEmpty() ? ' ' : value.charAt(value.length() - 1));
+            if (suffix == 'K' || suffix == 'M' || suffix == 'G') {
+                unit = suffix == 'K' ? 1024 : suffix == 'M' ? 1024 * 1024 : 1024 * 1024 * 1024;
+                digits = value.substring(0, value.length() - 1);
+            }
+            try {
+                long size = Long.parseLong(digits) * unit;
+                if (size > 0) {
+                    return size;
+                }
+            } catch (NumberFormatException e) {
+                // Reported below
+            }
+            throw new IllegalArgumentException("Invalid value for -S: " + value);
+        }
+    }
+
+    // A line with its sort key worked out
+    private record Line(String text, String key, double number) {
+    }
+
+    private final Options options;
+    private final Path tempDir;
+    private final Pipeline.Stage next;
+    private final Comparator<Line> keyOrder; // Equal for lines -u treats as duplicates
+    private final Comparator<Line> order; // Key, then the whole line
+    private final long chunkBudget;
+    private List<Line> chunk = new ArrayList<>();
+    private long chunkBytes = 0;
+    private final List<Path> runs = new ArrayList<>();
+    private final List<Future<Path>> spills = new ArrayList<>();
+    private ExecutorService workers; // Created with the first spill
+    private final Semaphore inFlight; // Chunks held by workers, bounding memory to the budget
+
+    ExternalSort(Options options, Pipeline.Stage next) {
+        this.options = options;
+        this.next = next;
+        this.tempDir = options.tempDir != null
+                ? Session.current().directory().resolve(options.tempDir)
+                : Paths.get(System.getProperty("java.io.tmpdir"));
+        Comparator<Line> keys = options.numeric
+                ? Comparator.comparingDouble(Line::number)
+                : Comparator.comparing(Line::key);
+        this.keyOrder = options.reverse ? keys.reversed() : keys;
+        Comparator<Line> lines = Comparator.comparing(Line::text);
+        this.order = keyOrder.thenComparing(options.reverse ? lines.reversed() : lines);
+        // The chunk being filled plus one per worker fit the budget together
+        this.chunkBudget = Math.max(1, options.memory / (options.parallelism + 1));
+        this.inFlight = new Semaphore(options.parallelism);
+    }
+
+    @Override
+    public void accept(String text) throws IOException {
+        chunk.add(line(text));
+        chunkBytes += LINE_OVERHEAD + 2L * text.length();
+        if (chunkBytes >= chunkBudget) {
+            spill();
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        try {
+            if (runs.isEmpty() && spills.isEmpty()) {
+                Line[] lines = chunk.toArray(new Line[0]);
+                chunk = null;
+                Arrays.parallelSort(lines, order); // Everything fits in memory
+                Line previous = null;
+                for (Line line : lines) {
+                    previous = emit(previous, line);
+                }
+            } else {
+                if (!chunk.isEmpty()) {
+                    spill();
+                }
+                chunk = null;
+                awaitSpills();
+                while (runs.size() > MAX_MERGE_WIDTH) {
+                    List<Path> group = runs.subList(0, MAX_MERGE_WIDTH);
+                    Path merged = mergeToRun(group);
+                    for (Path run : group) {
+                        Files.deleteIfExists(run);
+                    }
+                    group.clear();
+                    runs.add(merged);
+                }
+                merge(runs, new Merged() {
+                    Line previous = null;
+
+                    @Override
+                    public void accept(Line line) throws IOException {
+                        previous = emit(previous, line);
+                    }
+                });
+            }
+        } finally {
+            deleteRuns();
+        }
+        next.finish();
+    }
+
+    // Pass the line on unless -u and it has the key of the one before; returns the new previous line
+    private Line emit(Line previous, Line line) throws IOException {
+        if (options.unique && previous != null && keyOrder.compare(previous, line) == 0) {
+            return previous;
+        }
+        next.accept(line.text());
+        return line;
+    }
+
+    private Line line(String text) {
+        String key = options.key == 0 ? text : field(text, options.key);
+        return new Line(text, key, options.numeric ? leadingNumber(key) : 0);
+    }
+
+    // The nth whitespace-separated field, or "" when the line has fewer
+    private static String field(String text, int n) {
+        int length = text.length();
+        int i = 0;
+        for (int field = 1; ; field++) {
+            while (i < length && Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && !Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            if (field == n || start == length) {
+                return text.substring(start, i);
+            }
+        }
+    }
+
+    // The number the key starts with, like sort -n: 0 when it does not start with one
+    private static double leadingNumber(String key) {
+        int length = key.length();
+        int i = 0;
+        while (i < length && Character.isWhitespace(key.charAt(i))) {
+            i++;
+        }
+        int start = i;
+        if (i < length && (key.charAt(i) == '-' || key.charAt(i) == '+')) {
+            i++;
+        }
+        int digits = 0;
+        boolean point = false;
+        for (; i < length; i++) {
+            char c = key.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+            } else if (c == '.' && !point) {
+                point = true;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0) {
+            return 0;
+        }
+        return Double.parseDouble(key.substring(start, i));
+    }
+
+    // Hand the full chunk to a worker that sorts it into a run file, and start a new one
+    private void spill() throws IOException {
+        if (workers == null) {
+            workers = Executors.newFixedThreadPool(options.parallelism, runnable -> {
+                Thread thread = new Thread(runnable, "mycli-sort");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        try {
+            inFlight.acquire(); // Wait while every worker still holds a chunk
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Sort interrupted", e);
+        }
+        List<Line> full = chunk;
+        chunk = new ArrayList<>();
+        chunkBytes = 0;
+        spills.add(workers.submit(() -> {
+            try {
+                full.sort(order);
+                Path run = Files.createTempFile(tempDir, "mycli-sort", ".run");
+                try (BufferedWriter writer = Files.newBufferedWriter(run, StandardCharsets.UTF_8)) {
+                    for (Line line : full) {
+                        writer.write(line.text());
+                        writer.write('\n');
+                    }
+                }
+                return run;
+            } finally {
+                inFlight.release();
+            }
+        }));
+    }
+
+    // Collect every run, also after a failed one, so all of them are deleted in the end
+    private void awaitSpills() throws IOException {
+        IOException failure = null;
+        for (Future<Path> spill : spills) {
+            try {
+                runs.add(spill.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = new IOException("Sort interrupted", e);
+                break;
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+                }
+            }
+        }
+        spills.clear();
+        workers.shutdown();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Receives the merged lines in order
+    private interface Merged {
+        void accept(Line line) throws IOException;
+    }
+
+    // The current line of a run being merged
+    private final class RunReader {
+        final LineScanner reader;
+        final int index; // Earlier runs first among equal lines, which keeps the sort stable
+        Line current;
+
+        RunReader(Path run, int index) throws IOException {
+            this.reader = LineScanner.openExact(run, StandardCharsets.UTF_8); // A \r inside a line stays in it
+            this.index = index;
+        }
+
+        boolean advance() throws IOException {
+            current = reader.next() ? line(reader.text()) : null;
+            return current != null;
+        }
+    }
+
+    private void merge(List<Path> group, Merged out) throws IOException {
+        PriorityQueue<RunReader> heap = new PriorityQueue<>(group.size(),
+                Comparator.<RunReader, Line>comparing(reader -> reader.current, order)
+                        .thenComparingInt(reader -> reader.index));
+        List<RunReader> readers = new ArrayList<>(group.size());
+        try {
+            for (int i = 0; i < group.size(); i++) {
+                RunReader reader = new RunReader(group.get(i), i);
+                readers.add(reader);
+                if (reader.advance()) {
+                    heap.add(reader);
+                }
+            }
+            while (!heap.isEmpty()) {
+                RunReader smallest = heap.poll();
+                out.accept(smallest.current);
+                if (smallest.advance()) {
+                    heap.add(smallest);
+                }
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.reader.close();
+            }
+        }
+    }
+
+    private Path mergeToRun(List<Path> group) throws IOException {
+        Path run = Files.createTempFile(tempDir, "mycli-sort", ".run");
+        try (BufferedWriter writer = Files.newBufferedWriter(run, StandardCharsets.UTF_8)) {
+            merge(group, line -> {
+                writer.write(line.text());
+                writer.write('\n');
+            });
+        } catch (IOException e) {
+            Files.deleteIfExists(run);
+            throw e;
+        }
+        return run;
+    }
+
+    // Remove the run files of a sort that did not finish
+    @Override
+    public void close() {
+        try {
+            if (!spills.isEmpty()) {
+                awaitSpills();
+            }
+        } catch (IOException e) {
+            // The runs written are deleted all the same
+        }
+        deleteRuns();
+    }
+
+    private void deleteRuns() {
+        for (Path run : runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (IOException e) {
+                // Left in the temp directory
+            }
+        }
+        runs.clear();
+        if (workers != null) {
+            workers.shutdown();
+        }
+    }
+}
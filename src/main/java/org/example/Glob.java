@@ -0,0 +1,396 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Shell style expansion of command arguments, done before a command runs.
+// Braces are expanded first as plain text: app-{1,2}.log is app-1.log and app-2.log, and
+// part{1..3} counts. Each result that contains *, ? or [...] is then matched against the filesystem
+// one path element at a time, with ** standing for any number of directories. As in a shell, * does
+// not match names starting with a dot and a pattern that matches nothing stays as it was written.
+// Matches are produced lazily from open directory streams, so walking a directory with a million
+// matching files never holds more than the directories currently being read. Compiled PathMatchers
+// are kept in a small LRU cache by pattern.
+public class Glob {
+
+    private static final int MAX_MATCHERS = 256;
+    private static final int MAX_EXPANSIONS = 100_000; // Words one argument's braces may expand to
+
+    // Least recently used first; locked, sessions expand arguments concurrently
+    private static final Map<String, PathMatcher> matchers = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PathMatcher> eldest) {
+                    return size() > MAX_MATCHERS;
+                }
+            });
+
+    private Glob() {
+    }
+
+    // Whether the text contains glob characters that match against the filesystem
+    static boolean isPattern(String text) {
+        return text.indexOf('*') >= 0 || text.indexOf('?') >= 0 || text.indexOf('[') >= 0;
+    }
+
+    // Whether the argument expands into something else than itself; braces are only looked at, not
+    // expanded, so x{1..100000} costs no more than x1
+    static boolean needsExpansion(String text) {
+        return isPattern(text) || findBraces(text) != null;
+    }
+
+    // Paths an argument stands for, resolved against base, produced lazily. Close the stream (or
+    // consume it fully) to release the directories still open.
+    static Stream<Path> expand(Path base, String argument) {
+        Expansion expansion = new Expansion(base, expandBraces(argument));
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(expansion, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(expansion::close);
+    }
+
+    // Paths every argument stands for, one after the other
+    static Stream<Path> expandAll(Path base, List<String> arguments) {
+        Stream<Path> all = Stream.empty();
+        for (String argument : arguments) {
+            all = Stream.concat(all, expand(base, argument));
+        }
+        return all;
+    }
+
+    // The command line with every argument after the command name expanded, for commands that take
+    // their operands as strings
+    static String[] expandArguments(Path base, String[] parts) {
+        List<String> expanded = new ArrayList<>(parts.length);
+        expanded.add(parts[0]);
+        for (int i = 1; i < parts.length; i++) {
+            expandArgument(base, parts[i], expanded);
+        }
+        return expanded.toArray(new String[0]);
+    }
+
+    // Add what the argument expands to. Matches of one argument are sorted, like a shell does, and
+    // stay relative when the pattern was relative.
+    static void expandArgument(Path base, String argument, List<String> expanded) {
+        if (!needsExpansion(argument)) {
+            expanded.add(argument);
+            return;
+        }
+        for (String alternative : expandBraces(argument)) {
+            if (!isPattern(alternative)) {
+                expanded.add(alternative);
+                continue;
+            }
+            List<String> matches = new ArrayList<>();
+            boolean relative = !Paths.get(alternative).isAbsolute();
+            try (Stream<Path> paths = expand(base, alternative)) {
+                paths.forEach(path -> matches.add(relative ? base.relativize(path).toString() : path.toString()));
+            }
+            Collections.sort(matches);
+            expanded.addAll(matches);
+        }
+    }
+
+    // Text level brace expansion: a{b,c}d is abd acd, x{1..3} is x1 x2 x3, nested braces work too.
+    // Braces without a comma or a range are kept as they are. More than MAX_EXPANSIONS results, e.g.
+    // from x{1..100000000}, is an error instead of running out of memory.
+    static List<String> expandBraces(String text) {
+        int[] braces = findBraces(text);
+        if (braces == null) {
+            return List.of(text);
+        }
+        int open = braces[0];
+        int close = braces[braces.length - 1];
+        String prefix = text.substring(0, open);
+        String suffix = text.substring(close + 1);
+        List<String> alternatives = new ArrayList<>();
+        if (braces.length > 2) {
+            for (int i = 0; i + 1 < braces.length; i++) {
+                alternatives.add(text.substring(braces[i] + 1, braces[i + 1]));
+            }
+        } else {
+            long[] range = range(text.substring(open + 1, close));
+            long step = range[0] <= range[1] ? 1 : -1;
+            for (long i = range[0]; i != range[1] + step; i += step) {
+                alternatives.add(String.valueOf(i));
+            }
+        }
+
+        List<String> results = new ArrayList<>();
+        for (String alternative : alternatives) {
+            results.addAll(expandBraces(prefix + alternative + suffix));
+            if (results.size() > MAX_EXPANSIONS) {
+                throw new IllegalArgumentException("Brace expansion of " + text + " has more than " + MAX_EXPANSIONS + " results");
+            }
+        }
+        return results;
+    }
+
+    // The first braces that expand: the offsets of the opening brace, of the commas at its level and
+    // of the closing brace, or null when there are none
+    private static int[] findBraces(String text) {
+        for (int open = text.indexOf('{'); open >= 0; open = text.indexOf('{', open + 1)) {
+            int depth = 0;
+            int close = -1;
+            List<Integer> commas = new ArrayList<>();
+            for (int i = open; i < text.length() && close < 0; i++) {
+                char c = text.charAt(i);
+                if (c == '{') {
+                    depth++;
+                } else if (c == '}' && --depth == 0) {
+                    close = i;
+                } else if (c == ',' && depth == 1) {
+                    commas.add(i);
+                }
+            }
+            if (close < 0) {
+                return null; // Unbalanced, nothing further can be expanded
+            }
+            if (commas.isEmpty() && range(text.substring(open + 1, close)) == null) {
+                continue; // Not an expansion, e.g. a regex quantifier {3}
+            }
+            int[] braces = new int[commas.size() + 2];
+            braces[0] = open;
+            for (int i = 0; i < commas.size(); i++) {
+                braces[i + 1] = commas.get(i);
+            }
+            braces[braces.length - 1] = close;
+            return braces;
+        }
+        return null;
+    }
+
+    // Bounds of a numeric range like 1..5 or 10..1, or null when the body is not one
+    private static long[] range(String body) {
+        int dots = body.indexOf("..");
+        if (dots < 0) {
+            return null;
+        }
+        long from;
+        long to;
+        try {
+            from = Integer.parseInt(body.substring(0, dots));
+            to = Integer.parseInt(body.substring(dots + 2));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (Math.abs(to - from) >= MAX_EXPANSIONS) {
+            throw new IllegalArgumentException("Brace range {" + body + "} has more than " + MAX_EXPANSIONS + " values");
+        }
+        return new long[]{from, to};
+    }
+
+    private static PathMatcher matcher(Path directory, String segment) {
+        PathMatcher matcher = matchers.get(segment);
+        if (matcher == null) {
+            // Compiled outside the lock; two sessions compiling the same segment is harmless
+            matcher = directory.getFileSystem().getPathMatcher("glob:" + segment);
+            matchers.put(segment, matcher);
+        }
+        return matcher;
+    }
+
+    // Matches of the brace alternatives one after the other
+    private static class Expansion implements Iterator<Path> {
+        private final Path base;
+        private final Iterator<String> alternatives;
+        private Matches current;
+
+        Expansion(Path base, List<String> alternatives) {
+            this.base = base;
+            this.alternatives = alternatives.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (current == null || !current.hasNext()) {
+                if (current != null) {
+                    current.close();
+                }
+                if (!alternatives.hasNext()) {
+                    current = null;
+                    return false;
+                }
+                current = new Matches(base, alternatives.next());
+            }
+            return true;
+        }
+
+        @Override
+        public Path next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        void close() {
+            if (current != null) {
+                current.close();
+            }
+        }
+    }
+
+    // Depth-first match of one pattern, with a stack of the directory streams being read
+    private static class Matches implements Iterator<Path> {
+
+        // A directory whose entries are matched against segment index, or searched for more
+        // directories when the segment is **
+        private record Level(DirectoryStream<Path> stream, Iterator<Path> entries, int index, boolean recursive) {
+        }
+
+        private final String pattern;
+        private final Path literal; // What the pattern stands for when nothing matches
+        private final List<String> segments = new ArrayList<>();
+        private final Deque<Level> stack = new ArrayDeque<>();
+        private final Deque<Path> pending = new ArrayDeque<>();
+        private Path next;
+        private boolean matchedAny = false;
+
+        Matches(Path base, String pattern) {
+            this.pattern = pattern;
+            Path path = Paths.get(pattern);
+            this.literal = base.resolve(path);
+            for (Path name : path) {
+                segments.add(name.toString());
+            }
+            if (!isPattern(pattern)) {
+                pending.add(literal);
+            } else {
+                start(path.isAbsolute() ? path.getRoot() : base, 0);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = computeNext();
+            }
+            return next != null;
+        }
+
+        @Override
+        public Path next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Path result = next;
+            next = null;
+            return result;
+        }
+
+        private Path computeNext() {
+            while (true) {
+                if (!pending.isEmpty()) {
+                    matchedAny = true;
+                    return pending.poll();
+                }
+                if (stack.isEmpty()) {
+                    if (!matchedAny && isPattern(pattern)) {
+                        matchedAny = true;
+                        return literal; // Nothing matched, keep the argument as written
+                    }
+                    return null;
+                }
+
+                Level top = stack.peek();
+                Path entry;
+                try {
+                    if (!top.entries().hasNext()) {
+                        closeQuietly(stack.pop());
+                        continue;
+                    }
+                    entry = top.entries().next();
+                } catch (DirectoryIteratorException e) {
+                    closeQuietly(stack.pop()); // The directory failed while being read, skip the rest of it
+                    continue;
+                }
+                String name = entry.getFileName().toString();
+                if (top.recursive()) {
+                    if (name.startsWith(".")) {
+                        continue;
+                    }
+                    if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                        start(entry, top.index()); // Still inside the **
+                    } else if (top.index() + 1 == segments.size()) {
+                        matchedAny = true;
+                        return entry; // A trailing ** matches the files beneath as well
+                    }
+                    continue;
+                }
+
+                String segment = segments.get(top.index());
+                if (name.startsWith(".") && !segment.startsWith(".")) {
+                    continue; // Hidden files only match patterns that ask for them
+                }
+                if (!matcher(entry, segment).matches(entry.getFileName())) {
+                    continue;
+                }
+                if (top.index() + 1 == segments.size()) {
+                    matchedAny = true;
+                    return entry;
+                }
+                if (Files.isDirectory(entry)) {
+                    start(entry, top.index() + 1);
+                }
+            }
+        }
+
+        // Continue matching at segment index inside directory
+        private void start(Path directory, int index) {
+            while (index < segments.size() && !isPattern(segments.get(index)) && !segments.get(index).equals("**")) {
+                directory = directory.resolve(segments.get(index)); // Plain names need no listing
+                index++;
+            }
+            if (index == segments.size()) {
+                if (Files.exists(directory, LinkOption.NOFOLLOW_LINKS)) {
+                    pending.add(directory);
+                }
+                return;
+            }
+
+            boolean recursive = segments.get(index).equals("**");
+            DirectoryStream<Path> stream;
+            try {
+                stream = Files.newDirectoryStream(directory);
+            } catch (IOException e) {
+                return; // Not a directory or not readable: no matches below it
+            }
+            stack.push(new Level(stream, stream.iterator(), index, recursive));
+            if (recursive) {
+                start(directory, index + 1); // ** also matches no directory at all
+            }
+        }
+
+        void close() {
+            while (!stack.isEmpty()) {
+                closeQuietly(stack.pop());
+            }
+        }
+
+        private static void closeQuietly(Level level) {
+            try {
+                level.stream().close();
+            } catch (IOException e) {
+                // Only read from
+            }
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+// Pattern matching for grep, compiled once per command.
+// A pattern without regex syntax is searched with Boyer-Moore-Horspool, which skips ahead
+// using a shift table instead of trying every position. Anything else is compiled once to a
+// java.util.regex.Pattern and each searcher reuses a single Matcher for all lines.
+// Files are read with a LineScanner. A case-sensitive literal is then also encoded once and searched
+// in the raw bytes of each line, so only the lines that get printed are ever decoded.
+public class Grep {
+
+    private static final String REGEX_CHARACTERS = "\\^$.|?*+()[]{}";
+
+    private final Options options;
+    private final String literal; // Case folded when -i is given, null for a regex
+    private final int[] shift; // Horspool shift per character, indexed by its low byte
+    private final byte[] literalBytes; // The literal in the file encoding, null when lines must be decoded
+    private final int[] byteShift; // Horspool shift per byte of literalBytes
+    private final Pattern regex;
+
+    private Grep(Options options) {
+        this.options = options;
+        String pattern = options.pattern;
+        if (options.fixed || !containsRegexSyntax(pattern)) {
+            literal = options.ignoreCase ? fold(pattern) : pattern;
+            shift = buildShiftTable(literal);
+            regex = null;
+            // Matching the bytes is only the same as matching the text where ASCII stays ASCII, and
+            // where the literal has bytes at all: getBytes turns what the charset lacks into '?'
+            if (!options.ignoreCase && LineScanner.isAsciiCompatible(options.encoding)
+                    && options.encoding.newEncoder().canEncode(literal)) {
+                literalBytes = literal.getBytes(options.encoding);
+                byteShift = buildByteShiftTable(literalBytes);
+            } else {
+                literalBytes = null;
+                byteShift = null;
+            }
+        } else {
+            literal = null;
+            shift = null;
+            literalBytes = null;
+            byteShift = null;
+            int flags = options.ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0;
+            try {
+                regex = Pattern.compile(pattern, flags);
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("Invalid pattern: " + e.getDescription());
+            }
+        }
+    }
+
+    static Grep compile(Options options) {
+        return new Grep(options);
+    }
+
+    Options options() {
+        return options;
+    }
+
+    // Decides whether a single line matches. Not thread-safe, every thread needs its own.
+    interface LineMatcher {
+        boolean matches(CharSequence line);
+    }
+
+    LineMatcher matcher() {
+        if (regex != null) {
+            Matcher matcher = regex.matcher("");
+            return line -> matcher.reset(line).find();
+        }
+        return line -> indexOf(line) >= 0;
+    }
+
+    // Selects lines for output the way the options ask for: -v inverts the match,
+    // -n prefixes the line number and -c only counts
+    class Selector {
+        private final LineMatcher matcher = matcher();
+        private long lineNumber = 0;
+        private long selected = 0;
+
+        // Returns the text to print for the line, or null when nothing should be printed
+        String select(String line) {
+            lineNumber++;
+            if (matcher.matches(line) == options.invert) {
+                return null;
+            }
+            selected++;
+            if (options.count) {
+                return null;
+            }
+            return options.lineNumbers ? lineNumber + ":" + line : line;
+        }
+
+        // Same for the current line of the scanner, decoding it only when it is printed or matched
+        // against a regex
+        String select(LineScanner scanner) {
+            lineNumber++;
+            boolean matches = literalBytes != null
+                    ? indexOf(scanner.bytes(), scanner.length()) >= 0
+                    : matcher.matches(scanner.text());
+            if (matches == options.invert) {
+                return null;
+            }
+            selected++;
+            if (options.count) {
+                return null;
+            }
+            return options.lineNumbers ? lineNumber + ":" + scanner.text() : scanner.text();
+        }
+
+        long selected() {
+            return selected;
+        }
+    }
+
+    // Search every line the scanner reads, passing the output (prefixed, e.g. with a file name) on
+    void search(LineScanner scanner, String prefix, Consumer<String> out) throws IOException {
+        Selector selector = new Selector();
+        while (scanner.next()) {
+            String result = selector.select(scanner);
+            if (result != null) {
+                out.accept(prefix + result);
+            }
+        }
+        if (options.count) {
+            out.accept(prefix + selector.selected());
+        }
+    }
+
+    private static boolean containsRegexSyntax(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            if (REGEX_CHARACTERS.indexOf(pattern.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String fold(String text) {
+        StringBuilder folded = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            folded.append(foldChar(text.charAt(i)));
+        }
+        return folded.toString();
+    }
+
+    private static char foldChar(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    // Characters sharing a low byte share a slot, so each slot keeps the smallest safe shift
+    private static int[] buildShiftTable(String literal) {
+        int[] table = new int[256];
+        int last = literal.length() - 1;
+        Arrays.fill(table, Math.max(literal.length(), 1));
+        for (int i = 0; i < last; i++) {
+            int slot = literal.charAt(i) & 0xFF;
+            table[slot] = Math.min(table[slot], last - i);
+        }
+        return table;
+    }
+
+    private static int[] buildByteShiftTable(byte[] literal) {
+        int[] table = new int[256];
+        int last = literal.length - 1;
+        Arrays.fill(table, Math.max(literal.length, 1));
+        for (int i = 0; i < last; i++) {
+            table[literal[i] & 0xFF] = last - i;
+        }
+        return table;
+    }
+
+    // Horspool over the first length bytes of a line, returns the position or -1
+    private int indexOf(byte[] text, int textLength) {
+        int length = literalBytes.length;
+        if (length == 0) {
+            return 0;
+        }
+        int last = length - 1;
+        byte lastByte = literalBytes[last];
+        int end = textLength - length;
+        int position = 0;
+        while (position <= end) {
+            byte b = text[position + last];
+            if (b == lastByte) {
+                int i = last - 1;
+                while (i >= 0 && text[position + i] == literalBytes[i]) {
+                    i--;
+                }
+                if (i < 0) {
+                    return position;
+                }
+            }
+            position += byteShift[b & 0xFF];
+        }
+        return -1;
+    }
+
+    // Boyer-Moore-Horspool search for the literal, returns the position or -1
+    private int indexOf(CharSequence text) {
+        int length = literal.length();
+        if (length == 0) {
+            return 0;
+        }
+        int last = length - 1;
+        boolean ignoreCase = options.ignoreCase;
+        int end = text.length() - length;
+        int position = 0;
+        while (position <= end) {
+            char c = text.charAt(position + last);
+            if (ignoreCase) {
+                c = foldChar(c);
+            }
+            if (c == literal.charAt(last)) {
+                int i = last - 1;
+                while (i >= 0) {
+                    char t = text.charAt(position + i);
+                    if ((ignoreCase ? foldChar(t) : t) != literal.charAt(i)) {
+                        break;
+                    }
+                    i--;
+                }
+                if (i < 0) {
+                    return position;
+                }
+            }
+            position += shift[c & 0xFF];
+        }
+        return -1;
+    }
+
+    // Options given to grep, e.g. "grep -in ERROR app.log", "grep -e -v- file" or "grep -r --sort ERROR logs"
+    static class Options {
+        boolean ignoreCase = false; // -i
+        boolean invert = false; // -v
+        boolean count = false; // -c
+        boolean lineNumbers = false; // -n
+        boolean fixed = false; // -F, never treat the pattern as a regex
+        boolean recursive = false; // -r, search directories
+        boolean sorted = false; // --sort, print files of -r in name order
+        int threads = Runtime.getRuntime().availableProcessors(); // --threads N, used by -r
+        Charset encoding = LineScanner.defaultCharset(); // --encoding name, of the files searched
+        String pattern = null;
+        List<String> files = new ArrayList<>();
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 1; i < args.length; i++) {
+                String arg = args[i];
+                if (options.pattern == null && arg.equals("-e")) {
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("Missing pattern after -e");
+                    }
+                    options.pattern = args[++i];
+                } else if (arg.equals("--encoding")) {
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("Missing name for --encoding");
+                    }
+                    options.encoding = LineScanner.charset(args[++i]);
+                } else if (arg.equals("--sort")) {
+                    options.sorted = true;
+                } else if (arg.equals("--threads")) {
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("Missing thread count for --threads");
+                    }
+                    try {
+                        options.threads = Integer.parseInt(args[++i]);
+                    } catch (NumberFormatException e) {
+                        options.threads = 0;
+                    }
+                    if (options.threads < 1) {
+                        throw new IllegalArgumentException("Invalid thread count for --threads: " + args[i]);
+                    }
+                } else if (arg.startsWith("-") && arg.length() > 1) {
+                    for (char flag : arg.substring(1).toCharArray()) {
+                        switch (flag) {
+                            case 'i':
+                                options.ignoreCase = true;
+                                break;
+                            case 'v':
+                                options.invert = true;
+                                break;
+                            case 'c':
+                                options.count = true;
+                                break;
+                            case 'n':
+                                options.lineNumbers = true;
+                                break;
+                            case 'F':
+                                options.fixed = true;
+                                break;
+                            case 'r':
+                            case 'R':
+                                options.recursive = true;
+                                break;
+                            default:
+                                throw new IllegalArgumentException("Invalid option for grep: " + arg);
+                        }
+                    }
+                } else if (options.pattern == null) {
+                    options.pattern = arg;
+                } else {
+                    options.files.add(arg);
+                }
+            }
+            if (options.pattern == null) {
+                throw new IllegalArgumentException("Usage: grep [-i] [-v] [-c] [-n] [-F] [--encoding name] [-r [--sort] [--threads N]] <pattern> [file...]");
+            }
+            return options;
+        }
+    }
+}
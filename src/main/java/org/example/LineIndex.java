@@ -0,0 +1,189 @@
+package org.example;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+// Sparse line-offset index of a file: the byte offset of every STRIDE-th line.
+// Finding line N means one lookup plus a scan over less than STRIDE lines, whatever the file size.
+// The index is filled by scanning memory-mapped windows of the file and can be read while it is
+// still being built; readers that need a part that is not indexed yet wait for it.
+public class LineIndex {
+
+    static final int STRIDE = 1024; // Lines between two checkpoints
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024; // Bytes mapped at a time
+
+    private final long size;
+    private long[] checkpoints = new long[64]; // checkpoints[k] = offset of line k * STRIDE (0 based)
+    private int checkpointCount = 1; // Line 0 always starts at offset 0
+    private long newlines = 0; // Newlines seen so far
+    private boolean lastByteIsNewline = false;
+    private boolean complete = false;
+    private IOException failure = null;
+
+    LineIndex(long size) {
+        this.size = size;
+    }
+
+    long size() {
+        return size;
+    }
+
+    // Scan the whole channel, publishing progress after every window
+    void build(FileChannel channel) throws IOException {
+        try {
+            long lines = 0;
+            boolean endsWithNewline = false;
+            long[] found = new long[16];
+            for (long position = 0; position < size; position += WINDOW_SIZE) {
+                if (Thread.currentThread().isInterrupted()) {
+                    fail(new InterruptedIOException("Indexing stopped")); // Nobody needs the index anymore
+                    return;
+                }
+                long length = Math.min(WINDOW_SIZE, size - position);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int limit = window.limit();
+                int foundCount = 0;
+                for (int i = 0; i < limit; i++) {
+                    if (window.get(i) == '\n') {
+                        lines++;
+                        if (lines % STRIDE == 0) {
+                            if (foundCount == found.length) {
+                                found = Arrays.copyOf(found, foundCount * 2);
+                            }
+                            found[foundCount++] = position + i + 1;
+                        }
+                    }
+                }
+                endsWithNewline = limit > 0 && window.get(limit - 1) == '\n';
+                publish(found, foundCount, lines, endsWithNewline);
+            }
+        } catch (IOException e) {
+            fail(e);
+            throw e;
+        }
+        finishBuild();
+    }
+
+    private synchronized void publish(long[] found, int foundCount, long lines, boolean endsWithNewline) {
+        for (int i = 0; i < foundCount; i++) {
+            if (checkpointCount == checkpoints.length) {
+                checkpoints = Arrays.copyOf(checkpoints, checkpointCount * 2);
+            }
+            checkpoints[checkpointCount++] = found[i];
+        }
+        newlines = lines;
+        lastByteIsNewline = endsWithNewline;
+        notifyAll();
+    }
+
+    private synchronized void finishBuild() {
+        complete = true;
+        notifyAll();
+    }
+
+    private synchronized void fail(IOException e) {
+        failure = e;
+        complete = true;
+        notifyAll();
+    }
+
+    synchronized boolean isComplete() {
+        return complete && failure == null;
+    }
+
+    synchronized boolean hasFailed() {
+        return failure != null;
+    }
+
+    // Wait until the whole file has been indexed
+    synchronized void awaitComplete() throws IOException, InterruptedException {
+        while (!complete) {
+            wait();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Number of newline characters, what wc -l reports. Only final once the index is complete.
+    synchronized long newlineCount() {
+        return newlines;
+    }
+
+    // Number of lines, counting a last line without a newline. Only final once the index is complete.
+    synchronized long lineCount() {
+        return newlines + (size > 0 && !lastByteIsNewline ? 1 : 0);
+    }
+
+    // Offset of the closest checkpoint at or before the given line (0 based) together with its line,
+    // waiting for the background build to get there if needed
+    synchronized long[] checkpointBefore(long line) throws IOException, InterruptedException {
+        long wanted = line / STRIDE;
+        while (wanted >= checkpointCount && !complete) {
+            wait();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        int k = (int) Math.min(wanted, checkpointCount - 1);
+        return new long[]{checkpoints[k], (long) k * STRIDE};
+    }
+
+    // Compact form for sidecar files: the checkpoints are stored as varint encoded gaps,
+    // which take two or three bytes each for typical line lengths instead of eight
+    synchronized void writeTo(DataOutputStream data) throws IOException {
+        data.writeLong(size);
+        data.writeLong(newlines);
+        data.writeBoolean(lastByteIsNewline);
+        data.writeInt(checkpointCount);
+        long previous = 0;
+        for (int i = 0; i < checkpointCount; i++) {
+            writeVarLong(data, checkpoints[i] - previous);
+            previous = checkpoints[i];
+        }
+    }
+
+    static LineIndex readFrom(DataInputStream data) throws IOException {
+        LineIndex index = new LineIndex(data.readLong());
+        index.newlines = data.readLong();
+        index.lastByteIsNewline = data.readBoolean();
+        int count = data.readInt();
+        if (count < 1) {
+            throw new IOException("Corrupt line index");
+        }
+        index.checkpoints = new long[count];
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            previous += readVarLong(data);
+            index.checkpoints[i] = previous;
+        }
+        index.checkpointCount = count;
+        index.complete = true;
+        return index;
+    }
+
+    private static void writeVarLong(DataOutputStream data, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            data.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream data) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = data.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt line index");
+    }
+}
@@ -0,0 +1,167 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Line indexes shared by less, wc -l and tail, so a file is only scanned once while it stays unchanged.
+// Entries are keyed by path, size and modification time, so a changed file simply misses the cache.
+// The most recently used indexes are kept in memory. When the system property mycli.lineindex.dir
+// names a directory, complete indexes are also saved there as small sidecar files and reloaded by
+// later runs of the CLI.
+public class LineIndexCache {
+
+    private static final int MAX_ENTRIES = Integer.getInteger("mycli.lineindex.entries", 32);
+    private static final int SIDECAR_MAGIC = 0x4C494458; // "LIDX"
+    private static final int SIDECAR_VERSION = 1;
+
+    private static final Map<Key, LineIndex> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, LineIndex> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    // Builds run in the background and keep going when the command that started them is done. At most
+    // one per core: each is a sequential scan, more at once would only compete for the disk and CPU
+    private static final ExecutorService builders = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+        Thread thread = new Thread(runnable, "line-indexer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private record Key(Path path, long size, long modified) {
+    }
+
+    private LineIndexCache() {
+    }
+
+    // Index for the file, possibly still being built in the background
+    static LineIndex get(Path file) throws IOException {
+        Key key = keyOf(file);
+        LineIndex index;
+        synchronized (cache) {
+            index = cache.get(key);
+            if (index != null && !index.hasFailed()) {
+                return index;
+            }
+            index = loadSidecar(key);
+            if (index != null) {
+                cache.put(key, index);
+                return index;
+            }
+            index = new LineIndex(key.size());
+            cache.put(key, index);
+        }
+
+        LineIndex building = index;
+        builders.execute(() -> build(key, building));
+        return index;
+    }
+
+    // Index for the file once it covers the whole file
+    static LineIndex getComplete(Path file) throws IOException, InterruptedException {
+        LineIndex index = get(file);
+        index.awaitComplete();
+        return index;
+    }
+
+    // Complete index for the file if one is already known, without starting a build
+    static LineIndex peekComplete(Path file) throws IOException {
+        Key key = keyOf(file);
+        synchronized (cache) {
+            LineIndex index = cache.get(key);
+            return index != null && index.isComplete() ? index : null;
+        }
+    }
+
+    // Forget every cached index (the sidecar files stay)
+    static void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    private static void build(Key key, LineIndex index) {
+        try (FileChannel channel = FileChannel.open(key.path(), StandardOpenOption.READ)) {
+            index.build(channel);
+            saveSidecar(key, index);
+        } catch (IOException e) {
+            // The index records the failure for whoever waits on it, and the next get() rebuilds it
+        }
+    }
+
+    private static Key keyOf(Path file) throws IOException {
+        Path path = file.toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        Instant modified = attributes.lastModifiedTime().toInstant();
+        return new Key(path, attributes.size(), modified.getEpochSecond() * 1_000_000_000L + modified.getNano());
+    }
+
+    // Sidecar files live in mycli.lineindex.dir, named after the file plus a hash of its full path
+    private static Path sidecarPath(Key key) {
+        String directory = System.getProperty("mycli.lineindex.dir");
+        if (directory == null) {
+            return null;
+        }
+        String name = key.path().getFileName() + "-" + Integer.toHexString(key.path().toString().hashCode()) + ".lidx";
+        return Paths.get(directory).resolve(name);
+    }
+
+    private static LineIndex loadSidecar(Key key) {
+        Path sidecar = sidecarPath(key);
+        if (sidecar == null || !Files.isRegularFile(sidecar)) {
+            return null;
+        }
+        try (DataInputStream data = new DataInputStream(new BufferedInputStream(Files.newInputStream(sidecar)))) {
+            if (data.readInt() != SIDECAR_MAGIC || data.readInt() != SIDECAR_VERSION
+                    || !data.readUTF().equals(key.path().toString()) || data.readLong() != key.modified()) {
+                return null; // Written for another file or an older version of this one
+            }
+            LineIndex index = LineIndex.readFrom(data);
+            return index.size() == key.size() ? index : null;
+        } catch (IOException e) {
+            return null; // A damaged sidecar is just rebuilt
+        }
+    }
+
+    private static void saveSidecar(Key key, LineIndex index) {
+        Path sidecar = sidecarPath(key);
+        if (sidecar == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(sidecar.getParent());
+            // Write to a temporary file first so readers never see half a sidecar
+            Path temporary = Files.createTempFile(sidecar.getParent(), sidecar.getFileName().toString(), ".tmp");
+            try {
+                try (DataOutputStream data = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                    data.writeInt(SIDECAR_MAGIC);
+                    data.writeInt(SIDECAR_VERSION);
+                    data.writeUTF(key.path().toString());
+                    data.writeLong(key.modified());
+                    index.writeTo(data);
+                }
+                Files.move(temporary, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            // Persisting is only an optimization
+        }
+    }
+}
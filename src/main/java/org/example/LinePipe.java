@@ -0,0 +1,173 @@
+package org.example;
+
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Bounded ring buffer of lines between two stages of a pipeline, with one producer and one consumer.
+// put blocks while the ring is full, so a fast producer waits for a slow consumer instead of its whole
+// output piling up in memory, and the consumer takes everything buffered in one go to keep the lock
+// traffic per line low. When the consumer stops early the pipe is cancelled and every further put
+// throws Broken, which ends the producer like SIGPIPE ends a process in a shell.
+public class LinePipe {
+
+    // Thrown to a producer whose consumer is gone
+    static class Broken extends RuntimeException {
+        Broken() {
+            super("Broken pipe", null, false, false);
+        }
+    }
+
+    private final String[] ring;
+    private final int mask;
+    private long head = 0; // Next line to take
+    private long tail = 0; // Next free slot
+    private boolean closed = false; // The producer is done
+    private boolean cancelled = false; // The consumer is gone
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    // capacity is rounded up to a power of two
+    LinePipe(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        this.ring = new String[size];
+        this.mask = size - 1;
+    }
+
+    void put(String line) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (tail - head == ring.length && !cancelled) {
+                notFull.await();
+            }
+            if (cancelled) {
+                throw new Broken();
+            }
+            ring[(int) (tail & mask)] = line;
+            if (tail++ == head) {
+                notEmpty.signal(); // Was empty, the consumer may be waiting
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Move every buffered line into batch, waiting for at least one; false once the input has ended
+    boolean take(List<String> batch) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (head == tail && !closed) {
+                notEmpty.await();
+            }
+            if (head == tail) {
+                return false;
+            }
+            boolean wasFull = tail - head == ring.length;
+            for (; head < tail; head++) {
+                int slot = (int) (head & mask);
+                batch.add(ring[slot]);
+                ring[slot] = null;
+            }
+            if (wasFull) {
+                notFull.signal();
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called by the producer once it has put its last line
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called by the consumer when it reads no further
+    void cancel() {
+        lock.lock();
+        try {
+            cancelled = true;
+            Arrays.fill(ring, null);
+            head = tail;
+            notFull.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The bytes a command writes, cut into lines for the pipe. Closing it sends the last, unterminated
+    // line and closes the pipe.
+    static class Writer extends OutputStream {
+        private final LinePipe pipe;
+        private final Charset charset = Charset.defaultCharset(); // What PrintStream and Output encode with
+        private byte[] line = new byte[256];
+        private int length = 0;
+
+        Writer(LinePipe pipe) {
+            this.pipe = pipe;
+        }
+
+        @Override
+        public void write(int b) {
+            if (b == '\n') {
+                emit();
+            } else {
+                append(new byte[]{(byte) b}, 0, 1);
+            }
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int count) {
+            int end = offset + count;
+            for (int i = offset; i < end; i++) {
+                if (bytes[i] == '\n') {
+                    append(bytes, offset, i - offset);
+                    emit();
+                    offset = i + 1;
+                }
+            }
+            append(bytes, offset, end - offset);
+        }
+
+        private void append(byte[] bytes, int offset, int count) {
+            if (length + count > line.length) {
+                line = Arrays.copyOf(line, Math.max(line.length * 2, length + count));
+            }
+            System.arraycopy(bytes, offset, line, length, count);
+            length += count;
+        }
+
+        private void emit() {
+            int end = length > 0 && line[length - 1] == '\r' ? length - 1 : length;
+            String text = new String(line, 0, end, charset);
+            length = 0;
+            try {
+                pipe.put(text);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new Broken();
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                if (length > 0) {
+                    emit(); // The last line had no line ending
+                }
+            } finally {
+                pipe.close();
+            }
+        }
+    }
+}
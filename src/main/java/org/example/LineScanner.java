@@ -0,0 +1,189 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+
+// Lines of a file as bytes, shared by cat, less, grep and displayFile.
+// The file is read through a direct ByteBuffer borrowed from a small pool, so no buffer is allocated per
+// file and the channel reads straight into it. Each line's bytes are copied into one reused array
+// without the line ending (\n or \r\n); only text() decodes them, and only once per line, so a search
+// on the bytes or a count never pays for decoding lines it does not print.
+// Decoding is lenient: bytes that are not valid in the charset become U+FFFD instead of failing the
+// whole file, so binary and Latin-1 logs read as UTF-8 still show.
+public class LineScanner implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final ArrayBlockingQueue<ByteBuffer> pool = new ArrayBlockingQueue<>(16); // Idle buffers
+
+    private final FileChannel channel;
+    private final boolean ownsChannel;
+    private final Charset charset;
+    private boolean stripCarriageReturn = true; // Before the \n, for files with \r\n line endings
+    private ByteBuffer buffer; // Unread bytes between position and limit
+    private long position; // Of the next read in the file
+    private long lineEnd; // Offset just after the current line and its line ending
+    private boolean endOfFile = false;
+    private byte[] line = new byte[256];
+    private int length = 0;
+    private String text; // The current line decoded, once asked for
+
+    // Every line of the file
+    static LineScanner open(Path file, Charset charset) throws IOException {
+        return new LineScanner(FileChannel.open(file, StandardOpenOption.READ), true, 0, charset);
+    }
+
+    // Every line of a file this program wrote with \n endings, such as a sort run: a \r at the end of a
+    // line is part of it
+    static LineScanner openExact(Path file, Charset charset) throws IOException {
+        LineScanner scanner = open(file, charset);
+        scanner.stripCarriageReturn = false;
+        return scanner;
+    }
+
+    // The lines of the channel from the byte offset on; the channel is left open
+    static LineScanner at(FileChannel channel, long offset, Charset charset) {
+        return new LineScanner(channel, false, offset, charset);
+    }
+
+    private LineScanner(FileChannel channel, boolean ownsChannel, long offset, Charset charset) {
+        this.channel = channel;
+        this.ownsChannel = ownsChannel;
+        this.charset = charset;
+        this.position = offset;
+        this.lineEnd = offset;
+        ByteBuffer pooled = pool.poll();
+        this.buffer = pooled != null ? pooled : ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.buffer.limit(0);
+    }
+
+    // The charset of an --encoding option, e.g. latin1 or windows-1252
+    static Charset charset(String name) {
+        Charset charset;
+        try {
+            charset = Charset.forName(name);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            throw new IllegalArgumentException("Unknown encoding: " + name);
+        }
+        if (!isAsciiCompatible(charset)) {
+            // Lines are split on the '\n' byte, which UTF-16 and the like do not have
+            throw new IllegalArgumentException("Unsupported encoding: " + name);
+        }
+        return charset;
+    }
+
+    // True when ASCII text, and so '\n', is the same bytes in the charset
+    static boolean isAsciiCompatible(Charset charset) {
+        return charset.canEncode() && Arrays.equals("Az09 \n".getBytes(charset), "Az09 \n".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // The default of commands without --encoding, as Files.newBufferedReader
+    static Charset defaultCharset() {
+        return StandardCharsets.UTF_8;
+    }
+
+    // Move to the next line; false at the end of the file
+    boolean next() throws IOException {
+        text = null;
+        length = 0;
+        while (true) {
+            if (!buffer.hasRemaining() && !fill()) {
+                if (length == 0) {
+                    return false;
+                }
+                endLine(0); // The last line has no line ending
+                return true;
+            }
+            int start = buffer.position();
+            int limit = buffer.limit();
+            for (int i = start; i < limit; i++) {
+                if (buffer.get(i) == '\n') {
+                    append(start, i - start);
+                    buffer.position(i + 1);
+                    endLine(1);
+                    return true;
+                }
+            }
+            append(start, limit - start);
+            buffer.position(limit);
+        }
+    }
+
+    private boolean fill() throws IOException {
+        if (endOfFile) {
+            return false;
+        }
+        buffer.clear();
+        int read = channel.read(buffer, position);
+        if (read <= 0) {
+            endOfFile = true;
+            buffer.limit(0);
+            return false;
+        }
+        position += read;
+        buffer.flip();
+        return true;
+    }
+
+    private void append(int start, int count) {
+        if (length + count > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, length + count));
+        }
+        buffer.get(start, line, length, count);
+        length += count;
+    }
+
+    private void endLine(int newline) {
+        lineEnd += length + newline;
+        if (stripCarriageReturn && length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+    }
+
+    // The bytes of the current line are bytes()[0, length())
+    byte[] bytes() {
+        return line;
+    }
+
+    int length() {
+        return length;
+    }
+
+    // Offset in the file just after the current line
+    long lineEnd() {
+        return lineEnd;
+    }
+
+    // The current line decoded; the String constructor replaces malformed input
+    String text() {
+        if (text == null) {
+            text = new String(line, 0, length, charset);
+        }
+        return text;
+    }
+
+    Charset charset() {
+        return charset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buffer != null) {
+            buffer.clear();
+            pool.offer(buffer); // Dropped when the pool is full
+            buffer = null;
+        }
+        if (ownsChannel) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Optional in-process cache of file attributes and small directory listings, for filesystems where
+// every stat is a network round trip. Enabled with the system property mycli.metadata.cache=true.
+// Entries are keyed by absolute path and evicted least recently used first or once they are older
+// than the TTL. The most recently visited directories are registered with a WatchService, and its
+// events drop the affected entries right away; the TTL covers changes a watch cannot see, such as
+// other clients of a network mount. Commands that change the tree invalidate what they touched.
+// Sessions of the daemon use the cache at the same time, so entries are spread over segments by
+// path, each with its own lock and its own share of the LRU capacity.
+public class MetadataCache {
+
+    private static final int MAX_ENTRIES = Integer.getInteger("mycli.metadata.entries", 4096);
+    private static final int MAX_LISTINGS = Integer.getInteger("mycli.metadata.listings", 64);
+    static final int MAX_LISTING_SIZE = Integer.getInteger("mycli.metadata.listing.size", 10000);
+    private static final int MAX_WATCHED = Integer.getInteger("mycli.metadata.watched", 64);
+    private static final long TTL_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("mycli.metadata.ttl.ms", 5000));
+
+    private static volatile boolean enabled = Boolean.getBoolean("mycli.metadata.cache");
+
+    // A cached value and when it stops being trusted; a null value records a missing file
+    private record Cached<T>(T value, long expires) {
+        boolean isFresh() {
+            return System.nanoTime() - expires < 0;
+        }
+    }
+
+    private static final int SEGMENTS = 16; // A power of two
+
+    // One share of the cache, both maps guarded by the segment
+    private static final class Segment {
+        final Map<Path, Cached<BasicFileAttributes>> attributes = lruMap(Math.max(1, MAX_ENTRIES / SEGMENTS));
+        final Map<Path, Cached<List<DirectoryLister.Entry>>> listings = lruMap(Math.max(1, MAX_LISTINGS / SEGMENTS));
+    }
+
+    private static final Segment[] segments = new Segment[SEGMENTS];
+
+    static {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    // Guarded by itself, and never locked while a segment is
+    private static final Map<Path, WatchKey> watched = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, WatchKey> eldest) {
+            if (size() > MAX_WATCHED) {
+                eldest.getValue().cancel();
+                return true;
+            }
+            return false;
+        }
+    };
+    private static WatchService watcher; // Started with the first watched directory
+
+    private MetadataCache() {
+    }
+
+    private static Segment segmentOf(Path key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private static <V> Map<Path, V> lruMap(int maxEntries) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    static void setEnabled(boolean enable) {
+        enabled = enable;
+        if (!enable) {
+            clear();
+        }
+    }
+
+    // Attributes of the path (following links), or null when it does not exist or cannot be read
+    static BasicFileAttributes attributes(Path path) {
+        if (!enabled) {
+            return readAttributes(path);
+        }
+        Path key = keyOf(path);
+        Segment segment = segmentOf(key);
+        synchronized (segment) {
+            Cached<BasicFileAttributes> cached = segment.attributes.get(key);
+            if (cached != null && cached.isFresh()) {
+                return cached.value();
+            }
+        }
+
+        BasicFileAttributes read = readAttributes(key);
+        synchronized (segment) {
+            segment.attributes.put(key, new Cached<>(read, System.nanoTime() + TTL_NANOS));
+        }
+        if (key.getParent() != null) {
+            watch(key.getParent());
+        }
+        return read;
+    }
+
+    static boolean exists(Path path) {
+        return attributes(path) != null;
+    }
+
+    static boolean isDirectory(Path path) {
+        BasicFileAttributes read = attributes(path);
+        return read != null && read.isDirectory();
+    }
+
+    // Every entry of the directory, with attributes, if a fresh listing is cached
+    static List<DirectoryLister.Entry> listing(Path directory) {
+        if (!enabled) {
+            return null;
+        }
+        Path key = keyOf(directory);
+        Segment segment = segmentOf(key);
+        synchronized (segment) {
+            Cached<List<DirectoryLister.Entry>> cached = segment.listings.get(key);
+            return cached != null && cached.isFresh() ? cached.value() : null;
+        }
+    }
+
+    // Remember a complete listing; directories too large to be worth keeping are ignored
+    static void putListing(Path directory, List<DirectoryLister.Entry> entries) {
+        if (!enabled || entries.size() > MAX_LISTING_SIZE) {
+            return;
+        }
+        Path key = keyOf(directory);
+        Segment segment = segmentOf(key);
+        synchronized (segment) {
+            segment.listings.put(key, new Cached<>(List.copyOf(entries), System.nanoTime() + TTL_NANOS));
+        }
+        watch(key);
+    }
+
+    // Forget the path, everything below it and the listing of its parent
+    static void invalidate(Path path) {
+        if (!enabled) {
+            return;
+        }
+        Path key = keyOf(path);
+        for (Segment segment : segments) { // Whatever is below the path may be in any segment
+            synchronized (segment) {
+                segment.attributes.keySet().removeIf(cached -> cached.startsWith(key));
+                segment.listings.keySet().removeIf(cached -> cached.startsWith(key));
+            }
+        }
+        if (key.getParent() != null) {
+            Segment parent = segmentOf(key.getParent());
+            synchronized (parent) {
+                parent.listings.remove(key.getParent());
+            }
+        }
+    }
+
+    static void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.attributes.clear();
+                segment.listings.clear();
+            }
+        }
+    }
+
+    private static Path keyOf(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
+    private static BasicFileAttributes readAttributes(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+    }
+
+    // Register the directory with the watch service
+    private static void watch(Path directory) {
+        synchronized (watched) {
+            register(directory);
+        }
+    }
+
+    private static void register(Path directory) {
+        if (watched.get(directory) != null) {
+            return; // Already watched, now the most recently used
+        }
+        try {
+            if (watcher == null) {
+                watcher = directory.getFileSystem().newWatchService();
+                Thread thread = new Thread(MetadataCache::processEvents, "metadata-watcher");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            WatchKey key = directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watched.put(directory, key);
+        } catch (IOException | UnsupportedOperationException e) {
+            // Not watchable, the TTL still bounds how stale the entries get
+        }
+    }
+
+    private static void processEvents() {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                Path directory = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        invalidateChildren(directory); // Events were lost, anything in it may have changed
+                    } else {
+                        invalidate(directory.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset()) {
+                    // The directory itself is gone
+                    synchronized (watched) {
+                        watched.remove(directory);
+                    }
+                    invalidate(directory);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stop watching
+        }
+    }
+
+    private static void invalidateChildren(Path directory) {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.attributes.keySet().removeIf(cached -> directory.equals(cached.getParent()));
+                segment.listings.remove(directory);
+            }
+        }
+    }
+}
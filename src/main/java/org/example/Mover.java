@@ -0,0 +1,119 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// The work behind mv. Every move first tries an atomic rename; when source and destination are on
+// different filesystems it falls back to CopyEngine (copy, then delete the source).
+// Several sources are moved into a directory concurrently on a fixed number of threads, since each
+// move mostly waits on the filesystem. Sources are taken from an iterator as threads become free, so a
+// glob matching a million files is never held in memory, and results are reported in source order.
+public class Mover {
+
+    private final CopyEngine engine;
+    private final int threads;
+
+    Mover(CopyEngine engine, int threads) {
+        this.engine = engine;
+        this.threads = threads;
+    }
+
+    // Move src to dest, which is the final path (not the directory to move into)
+    void move(Path src, Path dest) throws IOException {
+        try {
+            Files.move(src, dest, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            engine.move(src, dest); // Another filesystem
+        }
+        MetadataCache.invalidate(src);
+        MetadataCache.invalidate(dest);
+    }
+
+    // How many of the sources were moved
+    record Result(long moved, long total) {
+    }
+
+    // Move every source into the directory, printing one error line per failed source
+    Result moveAll(Iterator<Path> sources, Path directory, Output out) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Deque<Future<String>> inFlight = new ArrayDeque<>();
+        long moved = 0;
+        long total = 0;
+        try {
+            while (sources.hasNext() || !inFlight.isEmpty()) {
+                if (sources.hasNext() && inFlight.size() < threads * 4) {
+                    Path src = sources.next();
+                    inFlight.add(pool.submit(() -> moveInto(src, directory)));
+                    total++;
+                    continue;
+                }
+                String error = inFlight.poll().get(); // The oldest move, so errors come out in order
+                if (error == null) {
+                    moved++;
+                } else {
+                    out.println(error);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return new Result(moved, total);
+    }
+
+    // Error message, or null when the source was moved
+    private String moveInto(Path src, Path directory) {
+        try {
+            move(src, directory.resolve(src.getFileName()));
+            return null;
+        } catch (NoSuchFileException e) {
+            return "Error: " + src + ": Source file or directory does not exist.";
+        } catch (IOException e) {
+            return "Error: " + src + ": Could not move/rename file or directory. " + e.getMessage();
+        }
+    }
+
+    // Options given to mv, e.g. "mv a.log b.log archive" or "mv --parallel 16 logs/*.log /mnt/archive"
+    static class Options {
+        int threads = 8;
+        final List<String> sources = new ArrayList<>();
+        String destination;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            List<String> operands = new ArrayList<>();
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].equals("--parallel")) {
+                    options.threads = DirectoryLister.Options.parseCount(args, i++);
+                    if (options.threads < 1) {
+                        throw new IllegalArgumentException("Invalid thread count for --parallel: " + args[i]);
+                    }
+                } else {
+                    operands.add(args[i]);
+                }
+            }
+            if (operands.size() < 2) {
+                throw new IllegalArgumentException("Source and destination paths required.");
+            }
+            options.sources.addAll(operands.subList(0, operands.size() - 1));
+            options.destination = operands.get(operands.size() - 1);
+            return options;
+        }
+    }
+}
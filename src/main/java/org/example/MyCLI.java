@@ -1,8 +1,12 @@
 package org.example;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -11,473 +15,1018 @@ import java.nio.file.Paths;
 
 public class MyCLI {
 
-    public static Path currentDir = Paths.get(System.getProperty("user.dir")); // Current directory
+    public static Path currentDir = Paths.get(System.getProperty("user.dir")); // Current directory of the process session
 
     public static void main(String[] args) {
-        Scanner scanner = new Scanner(System.in);
         String command;
+        Output.attachProcessStdout(); // Bulk output goes straight to the stdout file descriptor
 
-        System.out.println("Welcome to the CLI! Type 'help' for a list of commands.");
+        if (args.length > 0 && args[0].equals("--daemon")) {
+            Daemon.main(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--connect")) {
+            DaemonClient.main(args);
+            return;
+        }
+        if (args.length > 0 || !BatchRunner.stdinIsTerminal()) {
+            BatchRunner.main(args); // -c, -f or commands piped into stdin
+            return;
+        }
+
+        out().println("Welcome to the CLI! Type 'help' for a list of commands.");
 
         while (true) {
-            System.out.print("> ");
-            command = scanner.nextLine().trim();
-            if (command.isEmpty()) continue; // Skip empty input
+            out().print("> ");
+            command = readInputLine();
+            if (command == null) {
+                out().println("Exiting CLI..."); // End of input
+                return;
+            }
+            if (!execute(command)) {
+                return;
+            }
+        }
+    }
 
-            String[] parts = command.split("\\s+"); // Split by whitespace
-            String cmd = parts[0];
+    // Run one command line; false when it was exit
+    static boolean execute(String line) {
+        List<CommandLine.Statement> statements;
+        try {
+            statements = CommandLine.parse(line);
+        } catch (IllegalArgumentException e) {
+            out().println("Error: " + e.getMessage());
+            return true;
+        }
+        for (CommandLine.Statement statement : statements) {
+            if (!execute(statement)) {
+                return false;
+            }
+        }
+        return true;
+    }
 
+    // Run one statement, a command or commands connected by pipes; false when it was exit
+    static boolean execute(CommandLine.Statement statement) {
+        List<CommandLine.Command> pipeline = statement.pipeline();
+        CommandLine.Command last = pipeline.get(pipeline.size() - 1);
+        try {
+            if (pipeline.size() == 1 && last.name().equals("exit")) {
+                out().println("Exiting CLI...");
+                return false;
+            }
+            for (CommandLine.Command command : pipeline.subList(0, pipeline.size() - 1)) {
+                if (command.redirect() != null) {
+                    throw new IllegalArgumentException("Only the last command of a pipeline can be redirected.");
+                }
+            }
+            if (last.redirect() != null) {
+                runRedirected(pipeline, last.redirect());
+            } else {
+                run(pipeline);
+            }
+        } catch (Exception e) {
+            out().println("Error: " + e.getMessage());
+        }
+        return true;
+    }
 
+    private static void run(List<CommandLine.Command> pipeline) throws Exception {
+        run(pipeline, arguments(pipeline));
+    }
 
-            try {
-                switch (cmd) {
-                    case "mv":
-                        moveOrRename(parts);
-                        break;
-                    case "exit":
-                        System.out.println("Exiting CLI...");
+    // Run the pipeline with the words of its commands already expanded
+    private static void run(List<CommandLine.Command> pipeline, List<String[]> stages) throws Exception {
+        Command command = CommandRegistry.get().find(pipeline.get(0).name());
+        if (command == null) {
+            out().println("Invalid command. Type 'help' for a list of commands.");
+            return;
+        }
+        if (pipeline.size() > 1) {
+            new Pipeline(stages).run(); // The commands run at the same time, see Pipeline
+            return;
+        }
+        command.execute(stages.get(0));
+    }
+
+    // The words of every command of the pipeline
+    private static List<String[]> arguments(List<CommandLine.Command> pipeline) {
+        List<String[]> stages = new ArrayList<>(pipeline.size());
+        for (CommandLine.Command stage : pipeline) {
+            Command command = CommandRegistry.get().find(stage.name());
+            stages.add(arguments(stage, command != null && command.expandsOwnArguments()));
+        }
+        return stages;
+    }
+
+    // The words of the command with globs and braces expanded (*.log, app-{1,2}.log), except for
+    // quoted words and for commands that expand their arguments themselves
+    private static String[] arguments(CommandLine.Command parsed, boolean expandsOwnArguments) {
+        if (expandsOwnArguments) {
+            return parsed.args();
+        }
+        List<String> args = new ArrayList<>(parsed.words().size());
+        for (CommandLine.Word word : parsed.words()) {
+            if (args.isEmpty() || word.quoted()) {
+                args.add(word.text());
+            } else {
+                Glob.expandArgument(directory(), word.text(), args);
+            }
+        }
+        return args.toArray(new String[0]);
+    }
+
+    // command > file and command >> file: everything the command prints goes to the file
+    private static void runRedirected(List<CommandLine.Command> pipeline, CommandLine.Redirect redirect) throws Exception {
+        Path target = directory().resolve(redirect.target().text());
+        List<String[]> stages = arguments(pipeline); // Once, the same words are checked and run
+        if (stages.get(0)[0].equals("cat") && !sourcesFound(stages.get(0))) {
+            // Checked before the output is opened, so a missing input does not truncate it
+            out().println("Error: Source file not found.");
+            return;
+        }
+        if (Files.exists(target)) {
+            for (String[] stage : stages) {
+                for (String arg : stage) {
+                    // Truncating the input before reading it would lose the data
+                    if (isSameFile(directory(), arg, target)) {
+                        out().println("Error: Input file is the same as the output file.");
                         return;
-                    case "help":
-                        displayHelp();
-                        break;
-                    case "pwd":
-                        System.out.println(currentDir.toString());
-                        break;
-                    case "cd":
-                        if (parts.length > 1) {
-                            changeDirectory(parts[1]);
-                        } else {
-                            System.out.println("Usage: cd <directory>");
-                        }
-                        break;
-                    case "ls":
-                        listDirectory(parts);
-                        break;
-                    case "mkdir":
-                        if (parts.length > 1) {
-                            createDirectory(parts[1]);
-                        } else {
-                            System.out.println("Usage: mkdir <directory_name>");
-                        }
-                        break;
-                    case "rmdir":
-                        if (parts.length > 1) {
-                            removeDirectory(parts[1]);
-                        } else {
-                            System.out.println("Usage: rmdir <directory_name>");
-                        }
-                        break;
-                    case "touch":
-                        if (parts.length > 1) {
-                            createFile(parts[1]);
-                        } else {
-                            System.out.println("Usage: touch <file_name>");
-                        }
-                        break;
-                    case "rm":
-                        if (parts.length > 1) {
-                            removeFile(parts[1]);
-                        } else {
-                            System.out.println("Usage: rm <file_name>");
-                        }
-                        break;
-                    case "cat":
-                        cat(parts);
-                        break;
-                    case "less":
-                        if (parts.length > 1) {
-                            less(parts);
-                        } else {
-                            System.out.println("Usage: less <file_name>");
-                        }
-                    case "wc":
-                        if (parts.length > 1) {
-                            wc(parts);
-                        }
-                        else {
-                            System.out.println("Usage: wc <file_name>");
-                        }
-                        break;
-                    default:
-                        System.out.println("Invalid command. Type 'help' for a list of commands.");
+                    }
                 }
-            } catch (Exception e) {
-                System.out.println("Error: " + e.getMessage());
             }
         }
+        try (FileChannel file = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                redirect.append() ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING)) {
+            Session.current().redirect(file).run(() -> run(pipeline, stages));
+        } catch (IOException e) {
+            out().println("Error: Unable to write to output file.");
+            return;
+        }
+        MetadataCache.invalidate(target);
+        out().println("Output written to " + target);
+    }
+
+    // Whether every file cat [--encoding name] <file...> reads is there
+    private static boolean sourcesFound(String[] args) {
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--encoding")) {
+                i++;
+            } else if (!Files.isRegularFile(directory().resolve(args[i]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSameFile(Path directory, String arg, Path target) {
+        try {
+            Path path = directory.resolve(arg);
+            return Files.isRegularFile(path) && Files.isSameFile(path, target);
+        } catch (InvalidPathException | IOException e) {
+            return false; // Not a file name
+        }
+    }
+
+    // The commands built into the CLI, see CommandRegistry
+    static List<Command> builtinCommands() {
+        return List.of(
+                builtin("mv", MyCLI::moveOrRename, true),
+                builtin("cp", MyCLI::copy, true),
+                builtin("help", args -> displayHelp()),
+                builtin("pwd", args -> out().println(directory().toString())),
+                builtin("env", args -> printEnvironment()),
+                builtin("export", withArgument("Usage: export <name>=<value>", MyCLI::export)),
+                builtin("cd", withArgument("Usage: cd <directory>", args -> changeDirectory(args[1]))),
+                builtin("ls", MyCLI::listDirectory),
+                builtin("du", MyCLI::du),
+                builtin("mkdir", withArgument("Usage: mkdir <directory_name>", args -> createDirectory(args[1]))),
+                builtin("rmdir", withArgument("Usage: rmdir <directory_name>", args -> {
+                    if (args.length > 2 && args[1].equals("-p")) {
+                        removeDirectoryAndParents(args[2]);
+                    } else {
+                        removeDirectory(args[1]);
+                    }
+                })),
+                builtin("touch", withArgument("Usage: touch <file_name>", args -> createFile(args[1]))),
+                builtin("rm", withArgument("Usage: rm <file_name>", args -> {
+                    if (args.length > 2 || args[1].startsWith("-") || Glob.needsExpansion(args[1])) {
+                        remove(args); // Expands the operands lazily
+                    } else {
+                        removeFile(args[1]);
+                    }
+                }), true),
+                builtin("cat", MyCLI::catFiles),
+                builtin("less", withArgument("Usage: less [--encoding name] <file_name>", MyCLI::less)),
+                builtin("grep", MyCLI::grep),
+                builtin("tail", MyCLI::tail),
+                builtin("sort", MyCLI::sort),
+                builtin("uniq", MyCLI::uniq),
+                builtin("top", MyCLI::top),
+                builtin("wc", withArgument("Usage: wc [-l] [-w] [-c] [--parallel N] <file_name>", MyCLI::wc)));
+    }
+
+    private static Command builtin(String name, CommandRegistry.Body body) {
+        return builtin(name, body, false);
+    }
+
+    // expandsOwnArguments: the command expands globs lazily itself, so a huge match is never a list
+    private static Command builtin(String name, CommandRegistry.Body body, boolean expandsOwnArguments) {
+        return new CommandRegistry.Builtin(name, body, expandsOwnArguments);
+    }
+
+    // Runs body when the command got at least one argument, otherwise prints the usage
+    private static CommandRegistry.Body withArgument(String usage, CommandRegistry.Body body) {
+        return args -> {
+            if (args.length > 1) {
+                body.execute(args);
+            } else {
+                out().println(usage);
+            }
+        };
+    }
+
+    // Next line typed by the user, or null once the input has ended
+    static String readInputLine() {
+        return Session.current().readLine();
+    }
+
+    // State of the session the command runs for, see Session
+    private static Path directory() {
+        return Session.current().directory();
+    }
+
+    private static PrintStream out() {
+        return Session.current().out();
     }
 
     // Display help for commands
     public static void displayHelp() {
-        System.out.println("Supported commands:");
-        System.out.println("  pwd        - Show current directory path");
-        System.out.println("  cd <dir>   - Change directory to <dir>");
-        System.out.println("  ls         - List files and directories in the current directory");
-        System.out.println("  mkdir <dir>- Create a new directory");
-        System.out.println("  rmdir <dir>- Remove an empty directory");
-        System.out.println("  touch <file>- Create a new file");
-        System.out.println("  rm <file>  - Remove a file");
-        System.out.println("  cat <file> - Display contents of a file");
-        System.out.println("  mv <source...> <dest> - Move/rename files");
-        System.out.println("  exit       - Exit the CLI");
-        System.out.println("  help       - Show this help message");
+        out().println("Supported commands:");
+        out().println("  pwd        - Show current directory path");
+        out().println("  env        - Show the environment variables of the session");
+        out().println("  export <name>=<value> - Set an environment variable of the session");
+        out().println("  cd <dir>   - Change directory to <dir>");
+        out().println("  ls         - List files and directories in the current directory");
+        out().println("  ls [-a] [-l] [-r] [-S|-t] [--top K] [dir] - Long format, sort by size or time, keep only the first K");
+        out().println("  ls -R [--max-depth N] [--parallel N] [dir] - List a directory tree");
+        out().println("  du [-s] [-h] [--max-depth N] [--parallel N] [--timing] [dir...] - Show the size of directory trees");
+        out().println("  mkdir <dir>- Create a new directory");
+        out().println("  rmdir <dir>- Remove an empty directory");
+        out().println("  touch <file>- Create a new file");
+        out().println("  rm <file>  - Remove a file");
+        out().println("  rm -r [--parallel N] [--max-inflight N] <path...> - Remove directory trees in parallel");
+        out().println("  rmdir -p <dir> - Remove a directory and its empty parents");
+        out().println("  cat <file> - Display contents of a file");
+        out().println("  less <file> - Page through a file (Enter, b, g, G, <line>, q)");
+        out().println("  tail [-n N] [-f] <file> - Show the last lines of a file, -f keeps following it");
+        out().println("  wc [-l] [-w] [-c] [--parallel N] <file> - Count lines, words and bytes");
+        out().println("  grep [-i] [-v] [-c] [-n] [-F] <pattern> <file...> - Print lines matching a pattern");
+        out().println("  grep -r [--sort] [--threads N] <pattern> [dir...] - Search a directory tree in parallel");
+        out().println("  cat/less/grep/sort/uniq/top --encoding <name> ... - Read files in another charset, e.g. latin1; undecodable bytes are replaced");
+        out().println("  mv <source...> <dest> - Move/rename files");
+        out().println("  cp [-r] [--parallel N] <source...> <dest> - Copy files or trees, resuming an interrupted copy");
+        out().println("  mv [--parallel N] <source...> <dir> - Move many files (globs like logs/*.log) concurrently");
+        out().println("  exit       - Exit the CLI");
+        out().println("  help       - Show this help message");
+        out().println("  <command> > <file>, <command> >> <file> - Write or append the output of a command to a file");
+        out().println("  sort [-r] [-n] [-u] [-k N] [-S size] [-T dir] [--parallel N] <file...> - Sort lines, spilling to temp files above the -S memory budget");
+        out().println("  uniq [-c] <file...> - Drop repeated adjacent lines, -c counts them");
+        out().println("  top <N> [-f field] [-S size] [-T dir] <file...> - The N most frequent lines or field values");
+        out().println("  <command> | grep/wc/sort/uniq/top/less/cat ... - Feed the output of a command to the next one, e.g. ls | grep log | wc -l");
+        out().println("  'quoted words' and \"quoted words\" are passed as they are, without glob expansion");
+        for (Command plugin : CommandRegistry.get().plugins()) {
+            if (plugin.help() != null) {
+                out().println(plugin.help());
+            }
+        }
+    }
+
+    // Environment variables of the session, sorted by name
+    public static void printEnvironment() {
+        try (Output out = Output.stdout()) {
+            new TreeMap<>(Session.current().environment()).forEach((name, value) -> out.println(name + "=" + value));
+        }
+    }
+
+    public static void export(String[] args) {
+        for (int i = 1; i < args.length; i++) {
+            int equals = args[i].indexOf('=');
+            if (equals <= 0) {
+                out().println("Error: Invalid variable assignment: " + args[i]);
+                continue;
+            }
+            Session.current().environment().put(args[i].substring(0, equals), args[i].substring(equals + 1));
+        }
     }
 
     public static void changeDirectory(String dir) {
-        Path newPath = currentDir.resolve(dir).normalize();
-        System.out.println("Attempting to change to: " + newPath); // Debugging line
-        if (Files.isDirectory(newPath)) {
-            currentDir = newPath;
-            System.out.println("Changed directory to: " + currentDir);
+        Path newPath = directory().resolve(dir).normalize();
+        if (MetadataCache.isDirectory(newPath)) {
+            Session.current().setDirectory(newPath);
+            out().println("Changed directory to: " + directory());
         } else {
-            System.out.println("Directory not found: " + dir);
+            out().println("Directory not found: " + dir);
         }
     }
 
 
     public static void listDirectory(String[] parts) {
-        Path directory = currentDir; // Default to the current directory
+        DirectoryLister.Options options;
+        try {
+            options = DirectoryLister.Options.parse(parts);
+        } catch (IllegalArgumentException e) {
+            out().println(e.getMessage());
+            return;
+        }
 
-        // Check if a directory path is provided in parts[1]
-        if (parts.length > 1 && !parts[1].startsWith("-")) {
-            directory = Paths.get(parts[1]);
+        try (Output out = Output.stdout()) {
+            Path directory = options.directory == null ? directory() : directory().resolve(options.directory);
+            new DirectoryLister(options, out).list(directory); // Streams entries unless a sort is requested
+        } catch (IOException e) {
+            out().println("Error listing directory: " + e.getMessage());
+        } catch (InvalidPathException e) {
+            out().println("Invalid directory path provided.");
         }
+    }
 
+    public static void du(String[] args) {
+        DiskUsage.Options options;
         try {
-            DirectoryStream<Path> stream = Files.newDirectoryStream(directory);
-            List<Path> items = new ArrayList<>();
-
-            for (Path entry : stream) {
-                // Check if -a is specified in the command
-                boolean includeHidden = parts.length > 1 && parts[1].equals("-a");
+            options = DiskUsage.Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            out().println("Error: " + e.getMessage());
+            return;
+        }
 
-                // Add files to the list based on the presence of -a flag
-                if (includeHidden || !entry.getFileName().toString().startsWith(".")) {
-                    items.add(entry.getFileName()); // Include or exclude hidden files based on the flag
+        try (Output out = Output.stdout()) {
+            DiskUsage du = new DiskUsage(options, out);
+            for (String path : options.paths) {
+                try {
+                    du.run(directory().resolve(path), path);
+                } catch (NoSuchFileException e) {
+                    out.println("Error: No such file or directory: " + path);
                 }
             }
-
-            // Process options for listing
-            if (parts.length > 2) {
-                if (parts[2].equals("-r")) {
-                    Collections.reverse(items);
-                    items.forEach(System.out::println); // Print in reverse order
-                } else {
-                    System.out.println("Invalid option for ls");
-                }
-            } else if (parts.length > 1 && parts[1].equals("-r")) {
-                Collections.reverse(items);
-                items.forEach(System.out::println); // Reverse order if only -r is specified
-            } else {
-                items.forEach(System.out::println); // Default behavior: list normally
-            }
-
         } catch (IOException e) {
-            System.out.println("Error listing directory: " + e.getMessage());
+            out().println("Error: Could not read directory: " + e.getMessage());
         } catch (InvalidPathException e) {
-            System.out.println("Invalid directory path provided.");
+            out().println("Invalid directory path provided.");
         }
     }
 
-
-
     public static void createDirectory(String dirName) {
-        Path newDir = currentDir.resolve(dirName);
-        System.out.println("Attempting to create directory at: " + newDir.toString());
+        Path newDir = directory().resolve(dirName);
         try {
             Files.createDirectory(newDir);
-            System.out.println("Directory created: " + dirName);
+            MetadataCache.invalidate(newDir);
+            out().println("Directory created: " + dirName);
         } catch (IOException e) {
-            e.printStackTrace(); // Print stack trace for more details
-            System.out.println("Could not create directory: " + e.getMessage());
+            out().println("Could not create directory: " + e.getMessage());
         }
     }
 
     public static Path getCurrentDir() {
-        return currentDir;
+        return directory();
     }
 
     public static void removeDirectory(String dirName) {
-        Path dir = currentDir.resolve(dirName);
+        Path dir = directory().resolve(dirName);
         try {
             Files.delete(dir);
-            System.out.println("Directory removed: " + dirName);
+            MetadataCache.invalidate(dir);
+            out().println("Directory removed: " + dirName);
         } catch (IOException e) {
-            System.out.println("Could not remove directory: " + e.getMessage());
+            out().println("Could not remove directory: " + e.getMessage());
+        }
+    }
+
+    // rmdir -p a/b/c: remove c, then b and a as long as they are empty
+    public static void removeDirectoryAndParents(String dirName) {
+        Path relative = Paths.get(dirName).normalize();
+        while (relative != null && !relative.toString().isEmpty()) {
+            Path dir = directory().resolve(relative);
+            try {
+                Files.delete(dir);
+                MetadataCache.invalidate(dir);
+                out().println("Directory removed: " + relative);
+            } catch (IOException e) {
+                out().println("Could not remove directory: " + e.getMessage());
+                return;
+            }
+            relative = relative.getParent();
         }
     }
 
     public static void createFile(String fileName) {
-        Path file = currentDir.resolve(fileName);
+        Path file = directory().resolve(fileName);
         try {
             Files.createFile(file);
-            System.out.println("File created: " + fileName);
+            MetadataCache.invalidate(file);
+            out().println("File created: " + fileName);
         } catch (IOException e) {
-            System.out.println("Could not create file: " + e.getMessage());
+            out().println("Could not create file: " + e.getMessage());
         }
     }
 
     public static void removeFile(String fileName) {
-        Path file = currentDir.resolve(fileName);
+        Path file = directory().resolve(fileName);
         try {
             Files.delete(file);
-            System.out.println("File removed: " + fileName);
+            MetadataCache.invalidate(file);
+            out().println("File removed: " + fileName);
         } catch (IOException e) {
-            System.out.println("Could not remove file: " + e.getMessage());
+            out().println("Could not remove file: " + e.getMessage());
         }
     }
 
-    public static void displayFile(String fileName) {
-        Path file = currentDir.resolve(fileName);
+    // rm [-r] [--parallel N] [--max-inflight N] <path...>
+    public static void remove(String[] args) {
+        boolean recursive = false;
+        int threads = Runtime.getRuntime().availableProcessors() * 2; // Deletes mostly wait on the filesystem
+        int maxInFlight = 64;
+        List<String> operands = new ArrayList<>();
         try {
-            List<String> lines = Files.readAllLines(file);
-            for (String line : lines) {
-                System.out.println(line);
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].equals("-r") || args[i].equals("-R")) {
+                    recursive = true;
+                } else if (args[i].equals("--parallel") || args[i].equals("--max-inflight")) {
+                    int value = DirectoryLister.Options.parseCount(args, i++);
+                    if (value < 1) {
+                        throw new IllegalArgumentException("Invalid value for " + args[i - 1] + ": " + value);
+                    }
+                    if (args[i - 1].equals("--parallel")) {
+                        threads = value;
+                    } else {
+                        maxInFlight = value;
+                    }
+                } else if (args[i].startsWith("-") && args[i].length() > 1) {
+                    throw new IllegalArgumentException("Invalid option for rm: " + args[i]);
+                } else {
+                    operands.add(args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            out().println("Error: " + e.getMessage());
+            return;
+        }
+        if (operands.isEmpty()) {
+            out().println("Usage: rm [-r] <file_name...>");
+            return;
+        }
+
+        TreeRemover remover = new TreeRemover(threads, maxInFlight);
+        try (Output out = Output.stdout()) {
+            for (String operand : operands) {
+                try (Stream<Path> paths = Glob.expand(directory(), operand)) {
+                    for (Path path : (Iterable<Path>) paths::iterator) {
+                        if (!recursive) {
+                            removeFile(Glob.needsExpansion(operand) ? path.toString() : operand);
+                        } else {
+                            removeTree(remover, path, out);
+                        }
+                        out.flush(); // removeFile prints through the session output
+                    }
+                }
+            }
+        }
+    }
+
+    private static void removeTree(TreeRemover remover, Path path, Output out) {
+        if (path.toAbsolutePath().normalize().getParent() == null) {
+            out.println("Error: Refusing to remove the root directory " + path + ".");
+        } else if (directory().toAbsolutePath().normalize().startsWith(path.toAbsolutePath().normalize())) {
+            out.println("Error: Refusing to remove " + path + ", it contains the current directory.");
+        } else if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            out.println("Could not remove file: " + path + " does not exist.");
+        } else {
+            TreeRemover.Summary summary = remover.remove(path);
+            MetadataCache.invalidate(path);
+            for (String error : summary.errors) {
+                out.println("Could not remove: " + error);
+            }
+            out.println("Removed " + summary.files.get() + " files and " + summary.directories.get()
+                    + " directories, freed " + summary.bytes.get() + " bytes in "
+                    + summary.elapsedNanos / 1_000_000 + " ms");
+        }
+    }
+
+    public static void displayFile(String fileName) {
+        Path file = directory().resolve(fileName);
+        try (LineScanner scanner = LineScanner.open(file, LineScanner.defaultCharset())) {
+            while (scanner.next()) {
+                out().println(scanner.text()); // One line at a time, bad bytes shown as U+FFFD
             }
         } catch (IOException e) {
-            System.out.println("Could not read file: " + e.getMessage());
+            out().println("Could not read file: " + e.getMessage());
         }
     }
     public static void moveOrRename(String[] args) {
         if (args.length < 3) {
-            System.out.println("Error: Source and destination paths required.");
+            out().println("Error: Source and destination paths required.");
             return;
         }
 
-        // Resolve source path
-        Path src = Paths.get(args[1]).isAbsolute() ? Paths.get(args[1]) : currentDir.resolve(args[1]);
+        Mover.Options options;
+        try {
+            options = Mover.Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            out().println("Error: " + e.getMessage());
+            return;
+        }
 
-        // Resolve destination path
-        Path dest = Paths.get(args[2]);
+        Path src;
+        Path dest;
+        try {
+            src = directory().resolve(options.sources.get(0));
+            dest = directory().resolve(options.destination);
+        } catch (InvalidPathException e) {
+            out().println("Error: Invalid path: " + e.getMessage());
+            return;
+        }
+
+        Mover mover = new Mover(new CopyEngine(copyProgress()), options.threads);
+        if (options.sources.size() > 1 || Glob.needsExpansion(options.sources.get(0))) {
+            // Several sources all go into an existing directory, moved concurrently while globs are expanded
+            if (!MetadataCache.isDirectory(dest)) {
+                out().println("Error: Destination must be an existing directory when moving several files.");
+                return;
+            }
+            try (Output out = Output.stdout(); Stream<Path> sources = Glob.expandAll(directory(), options.sources)) {
+                Mover.Result result = mover.moveAll(sources.iterator(), dest, out);
+                out.println("Moved " + result.moved() + " of " + result.total() + " items to " + dest);
+            }
+            return;
+        }
 
         // Check if the source file exists
-        if (!Files.exists(src)) {
-            System.out.println("Error: Source file or directory does not exist.");
+        if (!MetadataCache.exists(src)) {
+            out().println("Error: Source file or directory does not exist.");
             return;
         }
 
         // Check if the destination exists
-        if (Files.exists(dest)) {
-            if (Files.isDirectory(dest)) {
+        if (MetadataCache.exists(dest)) {
+            if (MetadataCache.isDirectory(dest)) {
                 // If the destination is a directory, construct a new path for the file inside that directory
                 dest = dest.resolve(src.getFileName());
             } else {
                 // If the destination file already exists, print an error message
-                System.out.println("Error: Destination file already exists.");
+                out().println("Error: Destination file already exists.");
                 return;
             }
         } else {
             // If the destination does not exist, check if its parent directory exists
 
-            System.out.println("Error: Destination directory does not exist.");
+            out().println("Error: Destination directory does not exist.");
             return;
 
         }
 
         try {
-            // Move or rename the file/directory
-            Files.move(src, dest, StandardCopyOption.REPLACE_EXISTING);
-            System.out.println("Moved/Renamed " + src.getFileName() + " to " + dest.getFileName());
+            // Move or rename the file/directory, copying it when it goes to another filesystem
+            mover.move(src, dest);
+            out().println("Moved/Renamed " + src.getFileName() + " to " + dest.getFileName());
         } catch (NoSuchFileException e) {
-            System.out.println("Error: Source file or directory does not exist.");
+            out().println("Error: Source file or directory does not exist.");
         } catch (FileAlreadyExistsException e) {
-            System.out.println("Error: Destination file already exists.");
+            out().println("Error: Destination file already exists.");
         } catch (DirectoryNotEmptyException e) {
-            System.out.println("Error: Destination directory is not empty.");
+            out().println("Error: Destination directory is not empty.");
         } catch (IOException e) {
-            System.out.println("Error: Could not move/rename file or directory. " + e.getMessage());
-            e.printStackTrace(); // Print stack trace for debugging
+            out().println("Error: Could not move/rename file or directory. " + e.getMessage());
         }
     }
 
 
 
 
-    public static void cat(String[] args) {
-        // Check if there are enough arguments
-        if (args.length < 2) {
-            System.out.println("Error: No file specified.");
+    public static void copy(String[] args) {
+        CopyEngine.Options options;
+        try {
+            options = CopyEngine.Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            out().println("Error: " + e.getMessage());
             return;
         }
 
-        String commandPart = String.join(" ", args); // Combine args to a single string
-        String[] parts;
-
-        // Check for pipe operator
-        if (commandPart.contains("|")) {
-            // Split by '|' to handle piping
-            parts = commandPart.split("\\|", 2);
-            String filePart = parts[0].trim(); // This will be the input for cat
-            String nextCommandPart = parts[1].trim(); // This is the command that follows the pipe
+        Path dest;
+        try {
+            dest = directory().resolve(options.destination);
+        } catch (InvalidPathException e) {
+            out().println("Error: Invalid path: " + e.getMessage());
+            return;
+        }
 
-            // Handle the cat command and read the file
-            Path catFilePath = currentDir.resolve(filePart.split("\\s+")[1]);
-            if (Files.isRegularFile(catFilePath)) {
-                try (BufferedReader reader = Files.newBufferedReader(catFilePath)) {
-                    StringBuilder outputBuilder = new StringBuilder();
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        outputBuilder.append(line).append("\n"); // Collect the output
-                    }
+        boolean several = options.sources.size() > 1 || Glob.needsExpansion(options.sources.get(0));
+        boolean intoDirectory = MetadataCache.isDirectory(dest);
+        if (several && !intoDirectory) {
+            out().println("Error: Destination must be an existing directory when copying several files.");
+            return;
+        }
 
-                    // Now pass this output to the next command
-                    String output = outputBuilder.toString();
-                    executeNextCommand(nextCommandPart, output);
-                } catch (IOException e) {
-                    System.out.println("Error: Could not read file.");
+        CopyEngine engine = new CopyEngine(copyProgress());
+        try (Output out = Output.stdout(); Stream<Path> sources = Glob.expandAll(directory(), options.sources)) {
+            for (Path src : (Iterable<Path>) sources::iterator) {
+                Path target = intoDirectory ? dest.resolve(src.getFileName()) : dest;
+                if (intoDirectory && !several && CopyJournal.isResumable(src, dest)) {
+                    target = dest; // The interrupted run created dest itself, continue in it
+                }
+                if (!MetadataCache.exists(src)) {
+                    out.println("Error: " + src + ": Source file or directory does not exist.");
+                } else if (MetadataCache.isDirectory(src) && !options.recursive) {
+                    out.println("Error: " + src + " is a directory (use cp -r).");
+                } else if (target.toAbsolutePath().normalize().startsWith(src.toAbsolutePath().normalize())) {
+                    out.println("Error: Cannot copy " + src + " into itself.");
+                } else if (!MetadataCache.isDirectory(target.toAbsolutePath().getParent())) {
+                    out.println("Error: Destination directory does not exist.");
+                } else {
+                    copyOne(engine, src, target, options.threads, out);
                 }
-            } else {
-                System.out.println("Error: Source file not found.");
             }
+        } catch (IOException e) {
+            out().println("Error: Could not copy: " + e.getMessage());
+        }
+    }
+
+    // Copy one source, picking up where an interrupted copy of it stopped
+    private static void copyOne(CopyEngine engine, Path src, Path target, int threads, Output out) throws IOException {
+        CopyJournal journal = CopyJournal.open(src, target);
+        if (journal.doneCount() > 0) {
+            out.println("Resuming copy of " + src + ": " + journal.doneCount() + " files already copied");
+        }
+        CopyEngine.Summary summary = engine.copyParallel(src, target, threads, journal);
+        MetadataCache.invalidate(target);
+
+        for (String error : summary.errors) {
+            out.println("Error: " + error);
+        }
+        if (summary.errors.isEmpty()) {
+            journal.delete();
         } else {
-            // Check for redirection operator
-            if (commandPart.contains(">")) {
-                // Handle output redirection
-                parts = commandPart.split(">", 2);
-                String filePart = parts[1].trim();
-                boolean appendMode = false;
-
-                // Determine if it's an append or overwrite
-                if (filePart.startsWith(">")) {
-                    appendMode = true; // it's a double arrow
-                    filePart = filePart.substring(1).trim(); // Remove leading '>'
-                }
+            journal.close();
+            out.println("Copy of " + src + " is incomplete, run the same cp again to resume it.");
+        }
+        out.println("Copied " + summary.files.get() + " files (" + summary.bytes.get() + " bytes) to " + target
+                + (summary.skipped.get() > 0 ? ", skipped " + summary.skipped.get() + " already copied" : ""));
+    }
 
-                // Handle the redirection
-                Path outputPath = currentDir.resolve(filePart);
-                try (BufferedWriter writer = Files.newBufferedWriter(outputPath,
-                        StandardOpenOption.CREATE,appendMode ? StandardOpenOption.APPEND :
-                                StandardOpenOption.TRUNCATE_EXISTING)) {
-                    Path inputFilePath = currentDir.resolve(args[1]);
-                    if (Files.isRegularFile(inputFilePath)) {
-                        try (BufferedReader reader = Files.newBufferedReader(inputFilePath)) {
-                            String line;
-                            while ((line = reader.readLine()) != null) {
-                                writer.write(line);
-                                writer.newLine(); // Write to output file
-                            }
-                        }
-                        System.out.println("Output written to " + outputPath);
-                    } else {
-                        System.out.println("Error: Source file not found.");
-                    }
-                } catch (IOException e) {
-                    System.out.println("Error: Unable to write to output file.");
+    // Progress of a file copied by mv or cp, for files large enough to take a while. Reported from the
+    // copying threads, so the session's error stream is taken now.
+    private static CopyEngine.Progress copyProgress() {
+        PrintStream err = Session.current().err();
+        return (file, done, total) -> {
+            if (total > CopyEngine.CHUNK_SIZE) {
+                err.println("Copying " + file.getFileName() + ": " + (done * 100 / total) + "% of " + total + " bytes");
+            }
+        };
+    }
+
+    // cat with its arguments as tokens, where "|", ">" and ">>" are operators
+    public static void cat(String[] args) {
+        for (CommandLine.Statement statement : CommandLine.parse(args)) {
+            execute(statement);
+        }
+    }
+
+    // cat [--encoding name] <file...> once pipes and redirections have been taken care of
+    public static void catFiles(String[] args) {
+        Charset encoding = null; // Given: decode the files in it instead of copying their bytes
+        List<String> files = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--encoding")) {
+                if (i + 1 >= args.length) {
+                    out().println("Error: Missing name for --encoding");
+                    return;
                 }
+                encoding = LineScanner.charset(args[++i]);
             } else {
-                // Original behavior for cat command without redirection
-                Path filePath = currentDir.resolve(args[1]);
+                files.add(args[i]);
+            }
+        }
+
+        // Check if there are enough arguments
+        if (files.isEmpty()) {
+            out().println("Error: No file specified.");
+            return;
+        }
+
+        // Display every file given
+        try (Output out = Output.stdout()) {
+            for (String file : files) {
+                Path filePath = directory().resolve(file);
 
                 // Check if the file exists
                 if (!Files.exists(filePath)) {
-                    System.out.println("Error: File not found.");
-                    return;
+                    out.println("Error: File not found.");
+                    continue;
                 }
 
                 // Attempt to read and display the contents of the file
-                try (BufferedReader reader = Files.newBufferedReader(filePath)) {
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        System.out.println(line); // Output each line
+                if (out.isLineMode() || encoding != null) {
+                    // Someone is watching a terminal, show the file line by line
+                    try (LineScanner scanner = LineScanner.open(filePath, encoding != null ? encoding : LineScanner.defaultCharset())) {
+                        while (scanner.next()) {
+                            out.println(scanner.text()); // Output each line
+                        }
                     }
-                } catch (IOException e) {
-                    System.out.println("Error: Could not read file.");
+                } else {
+                    copyToOutput(filePath, out);
                 }
             }
+        } catch (IOException e) {
+            out().println("Error: Could not read file.");
+        }
+    }
+
+    private static void copyToOutput(Path file, Output out) throws IOException {
+        int lastByte = out.writeFile(file);
+        if (lastByte != -1 && lastByte != '\n' && !out.isFile()) {
+            out.println(""); // Keep the prompt on its own line
         }
     }
 
+    public static void wc(String[] args) {
+        WordCount.Options options;
+        try {
+            options = WordCount.Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            out().println("Error: " + e.getMessage());
+            return;
+        }
 
-    private static void wc(String[] args) {
-        // Check if there are enough arguments
-        if (args.length < 2) {
-            System.out.println("Error: No file specified.");
+        // Check if a file was given besides the options
+        if (options.file == null) {
+            out().println("Error: No file specified.");
             return;
         }
 
-        Path filePath = Paths.get(currentDir.toString(), args[1]); // Resolve the file path
+        Path filePath = directory().resolve(options.file); // Resolve the file path
 
         try {
-            // Read all lines from the file
-            List<String> lines = Files.readAllLines(filePath);
-
-            // Initialize the word count
-            int wordCount = 0;
-
-            // Count words in each line
-            for (String line : lines) {
-                // Trim the line and count the words
-                String trimmedLine = line.trim();
-                if (!trimmedLine.isEmpty()) {
-                    // Split by whitespace and count
-                    wordCount += trimmedLine.split("\\s+").length;
-                }
+            if (options.lines && !options.words && !options.bytes && options.parallelism <= 1) {
+                // Only lines: the shared line index answers this, and keeps the result for less and tail.
+                // With --parallel the lines are counted by the threads asked for instead
+                out().println("Line Count: " + LineIndexCache.getComplete(filePath).newlineCount());
+                return;
             }
 
-            // Print the total word count
-            System.out.println("Word Count: " + wordCount);
+            // Count lines, words and bytes in a single pass over the file, split across threads if asked
+            WordCount counts = options.parallelism > 1
+                    ? WordCount.countParallel(filePath, options.parallelism)
+                    : WordCount.count(filePath);
+            counts.report(options).forEach(out()::println);
         } catch (IOException e) {
-            System.out.println("Error reading file: " + e.getMessage());
+            out().println("Error reading file: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
 
 
-    private static void less(String[] args) {
-        if (args.length < 2) {
-            System.out.println("Error: No file specified for less.");
+    public static void grep(String[] args) {
+        Grep grep;
+        try {
+            grep = Grep.compile(Grep.Options.parse(args)); // Compile the pattern once for all files
+        } catch (IllegalArgumentException e) {
+            out().println("Error: " + e.getMessage());
             return;
         }
 
-        Path filePath = currentDir.resolve(args[1]);
-        if (!Files.exists(filePath)) {
-            System.out.println("Error: File not found.");
-            return;
+        List<String> files = grep.options().files;
+        boolean recursive = grep.options().recursive;
+        if (files.isEmpty()) {
+            if (!recursive) {
+                out().println("Error: No file specified.");
+                return;
+            }
+            files = List.of("."); // grep -r searches the current directory by default
         }
 
-        try (BufferedReader reader = Files.newBufferedReader(filePath)) {
-            String line;
-            int linesPerPage = 10; // Adjust this value to your preference
-            int lineCount = 0;
+        try (Output out = Output.stdout()) {
+            for (String file : files) {
+                Path filePath = directory().resolve(file);
+                if (recursive && Files.isDirectory(filePath)) {
+                    try {
+                        new RecursiveGrep(grep, out, grep.options().threads).search(filePath, Paths.get(file));
+                    } catch (IOException e) {
+                        out.println("Error: Could not search directory: " + file);
+                    }
+                    continue;
+                }
+                if (!Files.isRegularFile(filePath)) {
+                    out.println("Error: File not found: " + file);
+                    continue;
+                }
 
-            while ((line = reader.readLine()) != null) {
-                System.out.println(line);
-                lineCount++;
-                if (lineCount % linesPerPage == 0) {
-                    System.out.print("Press Enter to continue...");
-                    new Scanner(System.in).nextLine();
+                // Prefix results with the file name when searching several files or a tree
+                String prefix = files.size() > 1 || recursive ? file + ":" : "";
+                try (LineScanner scanner = LineScanner.open(filePath, grep.options().encoding)) {
+                    grep.search(scanner, prefix, out::println);
+                } catch (IOException e) {
+                    out.println("Error: Could not read file: " + file);
                 }
             }
+        }
+    }
+
+
+    public static void less(String[] args) {
+        Charset encoding = LineScanner.defaultCharset();
+        String file = null;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--encoding")) {
+                if (i + 1 >= args.length) {
+                    out().println("Error: Missing name for --encoding");
+                    return;
+                }
+                encoding = LineScanner.charset(args[++i]);
+            } else {
+                file = args[i];
+            }
+        }
+        if (file == null) {
+            out().println("Error: No file specified for less.");
+            return;
+        }
+
+        Path filePath = directory().resolve(file);
+        if (!Files.isRegularFile(filePath)) {
+            out().println("Error: File not found.");
+            return;
+        }
+
+        // Page through the file, the line index is built in the background
+        try (Output out = Output.stdout(); Pager pager = new Pager(filePath, 10, out, MyCLI::readInputLine, encoding)) {
+            pager.run();
         } catch (IOException e) {
-            System.out.println("Error: Could not read file for less.");
+            out().println("Error: Could not read file for less.");
         }
     }
 
 
-    private static void executeNextCommand(String command, String input) {
-        if (command.equals("wc")) {
-            int wordCount = input.split("\\s+").length;
-            System.out.println("Word Count: " + wordCount);
-        } else if (command.equals("grep")) {
-            // Example: Filter lines containing 'searchTerm'
-            String searchTerm = input.split("\\s+")[1]; // Assume the second part is the search term
-            Arrays.stream(input.split("\n"))
-                    .filter(line -> line.contains(searchTerm))
-                    .forEach(System.out::println);
-        } else if (command.equals("less")) {
-            // Call less command with the provided input
-            System.out.println("Passing input to less command...");
-            less(input.split("\\s+")); // Pass the whole input for less command
-        } else {
-            System.out.println("Error: Unsupported command after pipe.");
+    public static void tail(String[] args) {
+        Tail.Options options;
+        try {
+            options = Tail.Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            out().println("Error: " + e.getMessage());
+            return;
+        }
+
+        Path filePath = directory().resolve(options.file);
+        if (!Files.isRegularFile(filePath)) {
+            out().println("Error: File not found.");
+            return;
+        }
+
+        try (Output out = Output.stdout()) {
+            Tail tail = new Tail(out);
+            FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ);
+            long position;
+            try {
+                position = tail.printLastLines(filePath, channel, options.lines);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            if (!options.follow) {
+                channel.close();
+                return;
+            }
+
+            // Follow until the user presses Enter
+            Session session = Session.current(); // The waiter reads the input of this session
+            session.err().println("Following " + options.file + ", press Enter to stop.");
+            AtomicBoolean stopped = new AtomicBoolean(false);
+            AtomicBoolean done = new AtomicBoolean(false); // Following ended some other way
+            Thread waiter = new Thread(() -> {
+                session.readLine(done::get); // A line typed after tail ended is kept for the next command
+                stopped.set(true);
+            }, "tail-stop");
+            waiter.setDaemon(true);
+            waiter.start();
+            try {
+                tail.follow(filePath, channel, position, stopped::get); // Closes the channel when done
+            } finally {
+                done.set(true);
+            }
+        } catch (IOException e) {
+            out().println("Error: Could not read file: " + e.getMessage());
+        }
+    }
+
+    public static void sort(String[] args) {
+        ExternalSort.Options options;
+        try {
+            options = ExternalSort.Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            out().println("Error: " + e.getMessage());
+            return;
+        }
+        if (!filesFound(options.files)) {
+            return;
+        }
+
+        // The lines of all files sorted together, streamed from disk into the sort
+        try (Output out = Output.stdout();
+             ExternalSort sorter = new ExternalSort(options, new Pipeline.PrintStage(out))) {
+            feed(options.files, options.encoding, sorter);
+        } catch (IOException e) {
+            out().println("Error: Could not sort: " + e.getMessage());
         }
     }
+
+    public static void uniq(String[] args) {
+        Pipeline.UniqStage.Options options;
+        try {
+            options = Pipeline.UniqStage.Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            out().println("Error: " + e.getMessage());
+            return;
+        }
+        if (!filesFound(options.files)) {
+            return;
+        }
+
+        try (Output out = Output.stdout()) {
+            feed(options.files, options.encoding, new Pipeline.UniqStage(options, new Pipeline.PrintStage(out)));
+        } catch (IOException e) {
+            out().println("Error: Could not read file: " + e.getMessage());
+        }
+    }
+
+    public static void top(String[] args) {
+        TopCounter.Options options;
+        try {
+            options = TopCounter.Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            out().println("Error: " + e.getMessage());
+            return;
+        }
+        if (!filesFound(options.files)) {
+            return;
+        }
+
+        try (Output out = Output.stdout();
+             TopCounter counter = new TopCounter(options, new Pipeline.PrintStage(out))) {
+            feed(options.files, options.encoding, counter);
+        } catch (IOException e) {
+            out().println("Error: Could not count: " + e.getMessage());
+        }
+    }
+
+    // Print an error unless every file is there
+    private static boolean filesFound(List<String> files) {
+        if (files.isEmpty()) {
+            out().println("Error: No file specified.");
+            return false;
+        }
+        for (String file : files) {
+            if (!Files.isRegularFile(directory().resolve(file))) {
+                out().println("Error: File not found: " + file);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Stream the lines of the files into the stage, as if they were piped into it
+    private static void feed(List<String> files, Charset encoding, Pipeline.Stage stage) throws IOException {
+        for (String file : files) {
+            try (LineScanner scanner = LineScanner.open(directory().resolve(file), encoding)) {
+                while (scanner.next()) {
+                    stage.accept(scanner.text());
+                }
+            }
+        }
+        stage.finish();
+    }
+
     public static String sortOutput(String output) {
         if (output == null) return "Error: No input provided for sort.";
 
-        String[] lines = output.split("\n");
-        Arrays.sort(lines);
-        return String.join("\n", lines);
+        List<String> sorted = new ArrayList<>();
+        try {
+            ExternalSort sorter = new ExternalSort(new ExternalSort.Options(), new Pipeline.Stage() {
+                @Override
+                public void accept(String line) {
+                    sorted.add(line);
+                }
+
+                @Override
+                public void finish() {
+                }
+            });
+            for (String line : output.split("\n")) {
+                sorter.accept(line);
+            }
+            sorter.finish();
+        } catch (IOException e) {
+            return "Error: " + e.getMessage();
+        }
+        return String.join("\n", sorted);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,184 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Buffered standard output shared by cat, ls, grep and less.
+// Text is encoded into one large byte buffer that is written out in bulk, instead of calling
+// System.out.println per line, which locks the PrintStream and may flush every time.
+// While the CLI writes to its own stdout the buffer goes straight to the stdout FileChannel;
+// when System.out has been replaced (System.setOut), or the command runs for a session with its own
+// output, the buffer is handed to that stream in one call.
+// On an interactive terminal each line is flushed right away, so output stays line by line.
+// An Output is meant for one command on one thread and is flushed when closed.
+public class Output implements Flushable, Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static PrintStream processOut; // System.out of the running CLI, see attachProcessStdout()
+    private static FileChannel stdoutChannel; // Never closed
+
+    private final FileChannel channel; // Set when writing to the process stdout or a redirected file
+    private final PrintStream stream; // Set when System.out has been replaced
+    private final boolean lineMode;
+    private final boolean toFile;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final byte[] lineSeparator = System.lineSeparator().getBytes();
+
+    private Output(FileChannel channel, PrintStream stream, boolean lineMode, boolean toFile) {
+        this.channel = channel;
+        this.stream = stream;
+        this.lineMode = lineMode;
+        this.toFile = toFile;
+    }
+
+    // Output of the current session, flushing every line only when attached to a terminal
+    static Output stdout() {
+        return stdout(System.console() != null);
+    }
+
+    static Output stdout(boolean lineMode) {
+        Session session = Session.current();
+        if (session.outputFile() != null) {
+            return new Output(session.outputFile(), null, false, true); // command > file
+        }
+        PrintStream out = session.out();
+        out.flush(); // Anything printed before must come out first
+        synchronized (Output.class) {
+            if (out == processOut) {
+                return new Output(stdoutChannel, null, lineMode, false);
+            }
+        }
+        return new Output(null, out, lineMode, false);
+    }
+
+    // Called by the CLI entry point: from now on, while System.out is left as it is,
+    // output bypasses the PrintStream and is written to the stdout file descriptor directly
+    static synchronized void attachProcessStdout() {
+        processOut = System.out;
+        if (stdoutChannel == null) {
+            stdoutChannel = new FileOutputStream(FileDescriptor.out).getChannel();
+        }
+    }
+
+    // True when every line is flushed as soon as it is written
+    boolean isLineMode() {
+        return lineMode;
+    }
+
+    public void print(CharSequence text) {
+        CharBuffer chars = CharBuffer.wrap(text);
+        while (encoder.encode(chars, buffer, false) == CoderResult.OVERFLOW) {
+            flushBuffer();
+        }
+    }
+
+    public void println(CharSequence line) {
+        print(line);
+        write(lineSeparator, 0, lineSeparator.length);
+        if (lineMode) {
+            flush();
+        }
+    }
+
+    // Whether the output goes to a file, which has to get the bytes exactly as they are written
+    boolean isFile() {
+        return toFile;
+    }
+
+    // Copy a whole file to the output. When the output is a file descriptor the kernel moves the bytes
+    // (sendfile or copy_file_range), otherwise they go through the buffer. Returns the last byte of the
+    // file, or -1 when it is empty.
+    int writeFile(Path file) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = in.size();
+            int last = -1;
+            if (size > 0) {
+                ByteBuffer lastByte = ByteBuffer.allocate(1);
+                in.read(lastByte, size - 1);
+                last = lastByte.flip().hasRemaining() ? lastByte.get() & 0xFF : -1;
+            }
+            if (channel != null) {
+                flushBuffer();
+                long position = 0;
+                while (position < size) {
+                    long sent = in.transferTo(position, size - position, channel);
+                    if (sent <= 0) {
+                        break; // The file shrank while it was copied
+                    }
+                    position += sent;
+                }
+            } else {
+                do {
+                    if (!buffer.hasRemaining()) {
+                        flushBuffer();
+                    }
+                } while (in.read(buffer) >= 0);
+            }
+            return last;
+        }
+    }
+
+    // Raw bytes, written as they are
+    public void write(byte[] bytes, int offset, int length) {
+        while (length > 0) {
+            if (!buffer.hasRemaining()) {
+                flushBuffer();
+            }
+            int chunk = Math.min(length, buffer.remaining());
+            buffer.put(bytes, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    @Override
+    public void flush() {
+        flushBuffer();
+        if (stream != null) {
+            stream.flush();
+        }
+    }
+
+    // Flush but leave stdout open for the next command
+    @Override
+    public void close() {
+        flush();
+    }
+
+    private void flushBuffer() {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        try {
+            if (channel != null) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } else {
+                stream.write(buffer.array(), 0, buffer.limit());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+// The less command: pages through a file of any size without reading it from the start.
+// The first page is shown right away while the sparse LineIndex is built in the background.
+// Paging forward continues from the current byte offset, paging back and jumping to the end scan
+// backwards from a known offset, and jumping to line N uses the index, so every move only touches
+// the bytes around the page being shown.
+public class Pager implements Closeable {
+
+    static final String HELP = "Enter: next page, b: back, g: first line, G: last page, <N>: go to line N, q: quit";
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final int pageSize;
+    private final Output out;
+    private final Supplier<String> input; // Returns null when there is no more input
+    private final Charset charset;
+    private final LineIndex index;
+    private final ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+
+    private long topOffset = 0; // Byte offset of the first line on the page
+    private long topLine = 0; // Line number (0 based) of that line, -1 while it is not known
+
+    Pager(Path file, int pageSize, Output out, Supplier<String> input) throws IOException {
+        this(file, pageSize, out, input, LineScanner.defaultCharset());
+    }
+
+    Pager(Path file, int pageSize, Output out, Supplier<String> input, Charset charset) throws IOException {
+        this.charset = charset;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.pageSize = pageSize;
+        this.out = out;
+        this.input = input;
+        this.index = LineIndexCache.get(file); // Shared with wc -l and tail, built in the background if new
+    }
+
+    // Show pages until the user quits or the input ends
+    void run() throws IOException {
+        showPage();
+        String command;
+        while ((command = input.get()) != null) {
+            command = command.trim();
+            try {
+                if (command.isEmpty() || command.equals("f") || command.equals(" ")) {
+                    long next = skipLines(topOffset, pageSize);
+                    if (next >= size) {
+                        break; // Past the last page, like less -e
+                    }
+                    moveTo(next, topLine < 0 ? -1 : topLine + pageSize);
+                } else if (command.equals("b")) {
+                    moveTo(backLines(topOffset, pageSize), topLine < 0 ? -1 : Math.max(0, topLine - pageSize));
+                } else if (command.equals("g")) {
+                    moveTo(0, 0);
+                } else if (command.equals("G")) {
+                    lastPage();
+                } else if (command.equals("q")) {
+                    break;
+                } else if (command.matches("\\d+")) {
+                    goToLine(Long.parseLong(command));
+                } else {
+                    out.println(HELP);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            showPage();
+        }
+    }
+
+    private void moveTo(long offset, long line) {
+        topOffset = offset;
+        topLine = line;
+    }
+
+    // Show the lines ending at the end of the file
+    private void lastPage() throws IOException {
+        long end = size > 0 && readByte(size - 1) != '\n' ? size + 1 : size; // As if the last line had a newline
+        long offset = backLines(end, pageSize);
+        long line = -1;
+        if (index.isComplete()) {
+            line = Math.max(0, index.lineCount() - pageSize);
+        }
+        moveTo(offset, line);
+    }
+
+    // Go to line number (1 based) through the index, stopping at the last page
+    private void goToLine(long number) throws IOException, InterruptedException {
+        long line = Math.max(0, number - 1);
+        long[] checkpoint = index.checkpointBefore(line);
+        long offset = skipLines(checkpoint[0], line - checkpoint[1]);
+        if (offset >= size) {
+            lastPage();
+        } else {
+            moveTo(offset, line);
+        }
+    }
+
+    // Print the page starting at topOffset and the status prompt
+    private void showPage() throws IOException {
+        List<String> lines = new ArrayList<>(pageSize);
+        readLines(topOffset, pageSize, lines);
+        for (String line : lines) {
+            out.println(line);
+        }
+
+        String first = topLine < 0 ? "?" : String.valueOf(topLine + 1);
+        String last = topLine < 0 ? "?" : String.valueOf(topLine + lines.size());
+        String total = index.isComplete() ? String.valueOf(index.lineCount()) : "?";
+        out.println("-- lines " + first + "-" + last + " of " + total + " (" + HELP + ") --");
+        out.flush();
+    }
+
+    // Read up to count lines starting at offset
+    private void readLines(long offset, int count, List<String> lines) throws IOException {
+        try (LineScanner scanner = LineScanner.at(channel, offset, charset)) {
+            while (lines.size() < count && scanner.next()) {
+                lines.add(scanner.text());
+            }
+        }
+    }
+
+    // Offset of the line count lines after the one starting at offset (size when the file ends first)
+    private long skipLines(long offset, long count) throws IOException {
+        long position = offset;
+        while (count > 0 && position < size) {
+            block.clear();
+            int read = channel.read(block, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (block.get(i) == '\n' && --count == 0) {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return count == 0 ? position : size;
+    }
+
+    // Offset of the line count lines before the one starting at offset, scanning backwards.
+    // The byte before offset is the newline that ends the previous line, so the search starts before it.
+    private long backLines(long offset, int count) throws IOException {
+        long end = Math.min(offset - 1, size); // Bytes before this position are scanned
+        int found = 0;
+        while (end > 0) {
+            long start = Math.max(0, end - BLOCK_SIZE);
+            int read = readBlock(start, (int) (end - start));
+            for (int i = read - 1; i >= 0; i--) {
+                if (block.get(i) == '\n' && ++found == count) {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return 0;
+    }
+
+    // Fill the block with length bytes from position
+    private int readBlock(long position, int length) throws IOException {
+        block.clear();
+        block.limit(length);
+        while (block.hasRemaining()) {
+            if (channel.read(block, position + block.position()) < 0) {
+                break;
+            }
+        }
+        return block.position();
+    }
+
+    private byte readByte(long position) throws IOException {
+        readBlock(position, 1);
+        return block.get(0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,362 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Streaming pipeline of any commands, e.g. "ls -R | grep .log | wc -l".
+// Every stage runs on its own thread and hands its lines to the next one through a LinePipe, a bounded
+// ring buffer, so the stages work at the same time and a producer blocks once the buffer is full
+// instead of its whole output being held in memory. A stage is either
+//  - a filter reading the lines of the stage before it: grep, wc, sort, uniq or top without a file,
+//    less or cat alone, run as a chain of Stages that receive the input one line at a time
+//  - any other command, which runs as usual with what it prints cut into lines for the next stage;
+//    like a command in a shell pipeline that does not read stdin, it ignores the lines before it
+// The last stage runs on the calling thread and prints to the session's output. When a stage ends, the
+// pipe feeding it is cancelled, so the stages before it stop instead of producing for nobody.
+public class Pipeline {
+
+    private static final int PIPE_CAPACITY = 4096; // Lines buffered between two stages
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    // A single step of a filter
+    interface Stage {
+        void accept(String line) throws IOException; // Handle one line of input
+
+        void finish() throws IOException; // Called once when the input is exhausted
+    }
+
+    private final List<String[]> commands;
+
+    // The commands, each already split into its words, e.g. [ls, -R], [grep, .log] and [wc, -l].
+    // Every stage is checked before anything runs.
+    Pipeline(List<String[]> commands) {
+        for (String[] parts : commands.subList(1, commands.size())) {
+            if (!isFilter(parts) && CommandRegistry.get().find(parts[0]) == null) {
+                throw new IllegalArgumentException("Unsupported command after pipe.");
+            }
+        }
+        this.commands = commands;
+    }
+
+    // Commands that read the lines piped into them
+    static boolean isFilter(String[] parts) {
+        switch (parts[0]) {
+            case "grep":
+                Grep.Options grep = Grep.Options.parse(parts);
+                return grep.files.isEmpty() && !grep.recursive;
+            case "wc":
+                return WordCount.Options.parse(parts).file == null;
+            case "sort":
+                return ExternalSort.Options.parse(parts).files.isEmpty();
+            case "uniq":
+                return UniqStage.Options.parse(parts).files.isEmpty();
+            case "top":
+                return TopCounter.Options.parse(parts).files.isEmpty();
+            case "less":
+            case "cat":
+                return parts.length == 1;
+            default:
+                return false;
+        }
+    }
+
+    void run() throws Exception {
+        int count = commands.size();
+        Session session = Session.current();
+        LinePipe[] pipes = new LinePipe[count - 1]; // pipes[i] goes from stage i to stage i + 1
+        List<Thread> threads = new ArrayList<>();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        try {
+            for (int i = 0; i < count - 1; i++) {
+                String[] parts = commands.get(i);
+                LinePipe in = i > 0 ? pipes[i - 1] : null;
+                LinePipe out = pipes[i] = new LinePipe(PIPE_CAPACITY);
+                // Java 17 has no virtual threads; a platform thread per stage, they are few and short-lived
+                Thread thread = new Thread(() -> runStage(session, parts, in, out, failure),
+                        "mycli-pipe-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                threads.add(thread);
+                thread.start();
+            }
+            try {
+                runStage(commands.get(count - 1), pipes[count - 2], null);
+            } finally {
+                pipes[count - 2].cancel();
+            }
+        } finally {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    // A stage before the last, on its own thread with the output going into the pipe
+    private static void runStage(Session session, String[] parts, LinePipe in, LinePipe out,
+                                 AtomicReference<Exception> failure) {
+        LinePipe.Writer writer = new LinePipe.Writer(out);
+        PrintStream stream = new PrintStream(writer, false);
+        try {
+            session.withOutput(stream).run(() -> runStage(parts, in, out));
+            stream.flush();
+        } catch (LinePipe.Broken e) {
+            // The stages after this one are done
+        } catch (Exception e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            if (in != null) {
+                in.cancel(); // First: the stage before must be stopped even if the close below fails
+            }
+            try {
+                writer.close();
+            } catch (LinePipe.Broken e) {
+                // The stages after this one are done, the rest of the line is not needed
+            }
+        }
+    }
+
+    // A filter fed by the pipe in, or a command; out is the pipe to the next stage, null for the last
+    private static void runStage(String[] parts, LinePipe in, LinePipe out) throws Exception {
+        if (in == null || !isFilter(parts)) {
+            CommandRegistry.get().find(parts[0]).execute(parts);
+            return;
+        }
+        try (Output output = out == null ? Output.stdout() : null) {
+            Stage last = out == null ? new PrintStage(output) : new PipeStage(out);
+            Stage first = create(parts, last, output);
+            try {
+                List<String> batch = new ArrayList<>();
+                while (in.take(batch)) {
+                    for (String line : batch) {
+                        first.accept(line);
+                    }
+                    batch.clear();
+                }
+                first.finish();
+            } finally {
+                if (first instanceof Closeable closeable) {
+                    closeable.close(); // sort removes its temporary files
+                }
+            }
+        }
+    }
+
+    private static Stage create(String[] parts, Stage next, Output out) {
+        switch (parts[0]) {
+            case "wc":
+                return new WcStage(WordCount.Options.parse(parts), next);
+            case "sort":
+                return new ExternalSort(ExternalSort.Options.parse(parts), next);
+            case "uniq":
+                return new UniqStage(UniqStage.Options.parse(parts), next);
+            case "top":
+                return new TopCounter(TopCounter.Options.parse(parts), next);
+            case "grep":
+                return new GrepStage(Grep.compile(Grep.Options.parse(parts)), next);
+            case "less":
+                return out != null ? new LessStage(next, out) : next; // Only pages at the end
+            case "cat":
+                return next; // Passes the lines on as they are
+            default:
+                throw new IllegalArgumentException("Unsupported command after pipe.");
+        }
+    }
+
+    // Hand each line on to the next stage of the pipeline
+    static class PipeStage implements Stage {
+        private final LinePipe pipe;
+
+        PipeStage(LinePipe pipe) {
+            this.pipe = pipe;
+        }
+
+        @Override
+        public void accept(String line) {
+            try {
+                pipe.put(line);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new LinePipe.Broken();
+            }
+        }
+
+        @Override
+        public void finish() {
+            // The pipe is closed once the stage ends
+        }
+    }
+
+    // Terminal stage: hand each line to the output as soon as it arrives
+    static class PrintStage implements Stage {
+        private final Output out;
+
+        PrintStage(Output out) {
+            this.out = out;
+        }
+
+        @Override
+        public void accept(String line) {
+            out.println(line);
+        }
+
+        @Override
+        public void finish() {
+            out.flush();
+        }
+    }
+
+    // Count lines, words and bytes without splitting the lines into new strings
+    static class WcStage implements Stage {
+        private final WordCount.Options options;
+        private final Stage next;
+        private final WordCount counts = new WordCount();
+
+        WcStage(WordCount.Options options, Stage next) {
+            this.options = options;
+            this.next = next;
+        }
+
+        @Override
+        public void accept(String line) {
+            counts.update(line);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            for (String line : counts.report(options)) {
+                next.accept(line);
+            }
+            next.finish();
+        }
+    }
+
+    // Pass on the lines selected by the compiled grep pattern
+    static class GrepStage implements Stage {
+        private final Grep grep;
+        private final Grep.Selector selector;
+        private final Stage next;
+
+        GrepStage(Grep grep, Stage next) {
+            this.grep = grep;
+            this.selector = grep.new Selector();
+            this.next = next;
+        }
+
+        @Override
+        public void accept(String line) throws IOException {
+            String result = selector.select(line);
+            if (result != null) {
+                next.accept(result);
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (grep.options().count) {
+                next.accept(String.valueOf(selector.selected()));
+            }
+            next.finish();
+        }
+    }
+
+    // uniq [-c]: drop lines equal to the one before, like the Unix uniq, so "sort | uniq -c" counts
+    // every distinct line while only the previous line is kept
+    static class UniqStage implements Stage {
+        private final Options options;
+        private final Stage next;
+        private String previous = null;
+        private long count = 0;
+
+        static class Options {
+            boolean count = false; // -c, prefix each line with how often it repeated
+            Charset encoding = LineScanner.defaultCharset(); // --encoding name, of the files read
+            List<String> files = new ArrayList<>();
+
+            static Options parse(String[] args) {
+                Options options = new Options();
+                for (int i = 1; i < args.length; i++) {
+                    if (args[i].equals("-c")) {
+                        options.count = true;
+                    } else if (args[i].equals("--encoding")) {
+                        if (i + 1 >= args.length) {
+                            throw new IllegalArgumentException("Missing name for --encoding");
+                        }
+                        options.encoding = LineScanner.charset(args[++i]);
+                    } else if (args[i].startsWith("-") && args[i].length() > 1) {
+                        throw new IllegalArgumentException("Invalid option for uniq: " + args[i]);
+                    } else {
+                        options.files.add(args[i]);
+                    }
+                }
+                return options;
+            }
+        }
+
+        UniqStage(Options options, Stage next) {
+            this.options = options;
+            this.next = next;
+        }
+
+        @Override
+        public void accept(String line) throws IOException {
+            if (line.equals(previous)) {
+                count++;
+                return;
+            }
+            emit();
+            previous = line;
+            count = 1;
+        }
+
+        @Override
+        public void finish() throws IOException {
+            emit();
+            next.finish();
+        }
+
+        private void emit() throws IOException {
+            if (previous != null) {
+                next.accept(options.count ? String.format("%7d %s", count, previous) : previous);
+            }
+        }
+    }
+
+    // Page through the input, pausing every few lines
+    static class LessStage implements Stage {
+        private static final int LINES_PER_PAGE = 10; // Same page size as the less command
+        private final Stage next;
+        private final Output out;
+        private int lineCount = 0;
+
+        LessStage(Stage next, Output out) {
+            this.next = next;
+            this.out = out;
+        }
+
+        @Override
+        public void accept(String line) throws IOException {
+            next.accept(line);
+            lineCount++;
+            if (lineCount % LINES_PER_PAGE == 0) {
+                out.flush(); // The whole page must be visible before the prompt
+                PrintStream prompt = Session.current().out();
+                prompt.print("Press Enter to continue...");
+                prompt.flush();
+                MyCLI.readInputLine();
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            next.finish();
+        }
+    }
+}
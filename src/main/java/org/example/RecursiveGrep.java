@@ -0,0 +1,182 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+
+// grep -r: walks a directory tree and searches the files concurrently on a work-stealing pool.
+// The output of each file is collected first and printed as one block, so lines of different
+// files never interleave. With --sort the files are visited in name order and their blocks are
+// printed in that same order; otherwise a block is printed as soon as its file is done.
+// At most a few files per thread are in flight, so memory does not grow with the tree size.
+public class RecursiveGrep {
+
+    private static final int IN_FLIGHT_PER_THREAD = 4;
+
+    private final Grep grep;
+    private final Output out;
+    private final int threads;
+
+    RecursiveGrep(Grep grep, Output out, int threads) {
+        this.grep = grep;
+        this.out = out;
+        this.threads = threads;
+    }
+
+    // Search every regular file below root; displayRoot is the directory as the user typed it
+    void search(Path root, Path displayRoot) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            Search search = new Search(root, displayRoot, pool);
+            if (grep.options().sorted) {
+                search.walkSorted(root);
+            } else {
+                Files.walkFileTree(root, search.visitor());
+            }
+            search.finish();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // State of one recursive search
+    private class Search {
+        private final Path root;
+        private final Path displayRoot;
+        private final ForkJoinPool pool;
+        private final Semaphore inFlight = new Semaphore(threads * IN_FLIGHT_PER_THREAD);
+        private final Deque<CompletableFuture<List<String>>> ordered = new ArrayDeque<>(); // --sort only
+        private final List<CompletableFuture<?>> unordered = new ArrayList<>();
+
+        Search(Path root, Path displayRoot, ForkJoinPool pool) {
+            this.root = root;
+            this.displayRoot = displayRoot;
+            this.pool = pool;
+        }
+
+        SimpleFileVisitor<Path> visitor() {
+            return new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile()) {
+                        submit(file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    report(file);
+                    return FileVisitResult.CONTINUE;
+                }
+            };
+        }
+
+        // Depth-first walk with the entries of each directory sorted by name
+        void walkSorted(Path dir) {
+            List<Path> entries = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path entry : stream) {
+                    entries.add(entry);
+                }
+            } catch (IOException e) {
+                report(dir);
+                return;
+            }
+            Collections.sort(entries);
+            for (Path entry : entries) {
+                // Links are not followed, the same files as the unsorted walkFileTree visits
+                if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                    walkSorted(entry);
+                } else if (Files.isRegularFile(entry, LinkOption.NOFOLLOW_LINKS)) {
+                    submit(entry);
+                }
+            }
+        }
+
+        // Hand the file to the pool, waiting while too many files are already in flight
+        private void submit(Path file) {
+            if (grep.options().sorted) {
+                // Permits come back as blocks are printed, which only this thread does: wait for the
+                // head of the queue instead of for a permit no one else can release
+                while (!inFlight.tryAcquire()) {
+                    printAndRelease(ordered.poll().join());
+                }
+            } else {
+                inFlight.acquireUninterruptibly();
+            }
+            Path displayName = displayRoot.resolve(root.relativize(file));
+            CompletableFuture<List<String>> task = CompletableFuture.supplyAsync(() -> searchFile(file, displayName), pool);
+
+            if (grep.options().sorted) {
+                ordered.add(task);
+                // Print whatever is finished at the head of the queue without waiting
+                while (!ordered.isEmpty() && ordered.peek().isDone()) {
+                    printAndRelease(ordered.poll().join());
+                }
+            } else {
+                unordered.removeIf(CompletableFuture::isDone);
+                unordered.add(task.handle((block, error) -> {
+                    printAndRelease(block);
+                    return null;
+                }));
+            }
+        }
+
+        // Wait for the files still in flight
+        void finish() {
+            while (!ordered.isEmpty()) {
+                printAndRelease(ordered.poll().join());
+            }
+            CompletableFuture.allOf(unordered.toArray(new CompletableFuture<?>[0])).join();
+        }
+
+        private void report(Path path) {
+            print(List.of("Error: Could not read: " + displayRoot.resolve(root.relativize(path))));
+        }
+
+        private void printAndRelease(List<String> block) {
+            try {
+                if (block != null) {
+                    print(block);
+                }
+            } finally {
+                inFlight.release();
+            }
+        }
+
+        private void print(List<String> block) {
+            synchronized (out) {
+                for (String line : block) {
+                    out.println(line);
+                }
+            }
+        }
+    }
+
+    // Search one file, collecting its output lines.
+    // With -c every file reports a count, otherwise only files with matches produce lines.
+    private List<String> searchFile(Path file, Path displayName) {
+        List<String> block = new ArrayList<>();
+        try (LineScanner scanner = LineScanner.open(file, grep.options().encoding)) {
+            grep.search(scanner, displayName + ":", block::add);
+        } catch (IOException e) {
+            block.clear();
+            block.add("Error: Could not read file: " + displayName);
+        }
+        return block;
+    }
+}
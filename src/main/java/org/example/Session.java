@@ -0,0 +1,179 @@
+package org.example;
+
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+// What one user of the CLI works with: the current directory, environment variables, where output
+// goes and where interactive commands such as less read their input.
+// Commands find the session they run for with Session.current(). The interactive CLI and batch runs
+// use the process session, which is MyCLI.currentDir, System.out, System.err and stdin. The daemon
+// creates one session per connection and runs the connection's commands with it bound to the thread,
+// so commands of different sessions run at the same time without seeing each other's state.
+// A session itself is used by one command at a time; state commands hand to other threads, like the
+// error stream for progress, is taken from the session before the threads start.
+public class Session {
+
+    private static final ThreadLocal<Session> current = new ThreadLocal<>();
+    private static final Session process = new Session(null, null, null, null);
+
+    private Path directory; // null for the process session, which uses MyCLI.currentDir
+    private final Map<String, String> environment;
+    private final PrintStream out; // null: System.out at the time of use
+    private final PrintStream err; // null: System.err at the time of use
+    private final FileChannel outputFile; // Set while the output is redirected to a file
+    private final Input input; // Shared with the sessions made from this one by redirect and withOutput
+
+    Session(Path directory, PrintStream out, PrintStream err, Scanner input) {
+        this(directory, new HashMap<>(System.getenv()), out, err, null, new Input(input));
+    }
+
+    private Session(Path directory, Map<String, String> environment, PrintStream out, PrintStream err,
+                    FileChannel outputFile, Input input) {
+        this.directory = directory;
+        this.environment = environment;
+        this.out = out;
+        this.err = err;
+        this.outputFile = outputFile;
+        this.input = input;
+    }
+
+    // This session with the output going to the file, for "command > file"
+    Session redirect(FileChannel file) {
+        PrintStream fileOut = new PrintStream(Channels.newOutputStream(file), false); // Unbuffered, in order with Output
+        return new Session(directory(), environment, fileOut, err, file, input);
+    }
+
+    // This session with the output going to the stream, for a command inside a pipeline
+    Session withOutput(PrintStream stream) {
+        return new Session(directory(), environment, stream, err, null, input);
+    }
+
+    // A command run with a session bound
+    interface Task {
+        void run() throws Exception;
+    }
+
+    // The session bound to this thread, or the process session
+    static Session current() {
+        Session session = current.get();
+        return session != null ? session : process;
+    }
+
+    // Run the task with this session bound to the current thread
+    <T> T call(Supplier<T> task) {
+        Session previous = bind();
+        try {
+            return task.get();
+        } finally {
+            unbind(previous);
+        }
+    }
+
+    void run(Task task) throws Exception {
+        Session previous = bind();
+        try {
+            task.run();
+        } finally {
+            unbind(previous);
+        }
+    }
+
+    private Session bind() {
+        Session previous = current.get();
+        current.set(this);
+        return previous;
+    }
+
+    private static void unbind(Session previous) {
+        if (previous != null) {
+            current.set(previous);
+        } else {
+            current.remove();
+        }
+    }
+
+    Path directory() {
+        return this == process ? MyCLI.currentDir : directory;
+    }
+
+    void setDirectory(Path directory) {
+        if (this == process) {
+            MyCLI.currentDir = directory;
+        } else {
+            this.directory = directory;
+        }
+    }
+
+    Map<String, String> environment() {
+        return environment;
+    }
+
+    PrintStream out() {
+        return out != null ? out : System.out;
+    }
+
+    PrintStream err() {
+        return err != null ? err : System.err;
+    }
+
+    // The file the output is redirected to, or null
+    FileChannel outputFile() {
+        return outputFile;
+    }
+
+    // Next line of input, or null once the input has ended
+    String readLine() {
+        return input.readLine();
+    }
+
+    // Next line for a command that can end before the line comes, such as tail -f waiting for Enter
+    // on another thread: null once done, and a line that comes after that is left for the next
+    // readLine instead of being lost.
+    String readLine(BooleanSupplier done) {
+        return input.readLine(done);
+    }
+
+    // The input of a session and of the sessions derived from it, so a line left unread by a command
+    // in a pipeline or with redirected output is there for the next command, and stdin gets one Scanner.
+    // Everything happens under the lock that readLine waits for.
+    private static class Input {
+
+        private Scanner scanner; // Created from stdin on first use when not given
+        private String unread; // A line read for a command that had ended by the time it came
+
+        Input(Scanner scanner) {
+            this.scanner = scanner;
+        }
+
+        synchronized String readLine() {
+            if (unread != null) {
+                String line = unread;
+                unread = null;
+                return line;
+            }
+            if (scanner == null) {
+                scanner = new Scanner(System.in);
+            }
+            return scanner.hasNextLine() ? scanner.nextLine() : null;
+        }
+
+        synchronized String readLine(BooleanSupplier done) {
+            if (done.getAsBoolean()) {
+                return null;
+            }
+            String line = readLine();
+            if (line != null && done.getAsBoolean()) {
+                unread = line;
+                return null;
+            }
+            return line;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+// The tail command. The last lines are found by scanning backwards from the end of the file in
+// blocks (or through the cached line index when there is one), so only the end of the file is read.
+// With -f the parent directory is watched with a WatchService and only the bytes appended since the
+// last read are copied, using positioned reads. A file that is replaced (log rotation) or truncated
+// is reopened and followed from its start.
+public class Tail {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final long POLL_MILLIS = 250; // Also check without events, some filesystems send none
+
+    private final Output out;
+    private final ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+
+    Tail(Output out) {
+        this.out = out;
+    }
+
+    // Print the last count lines and return the offset where the file ended
+    long printLastLines(Path file, FileChannel channel, long count) throws IOException {
+        long size = channel.size();
+        long start = startOfLastLines(file, channel, size, count);
+        copy(channel, start, size);
+        out.flush();
+        return size;
+    }
+
+    // Keep printing what is appended to the file until stop says so
+    void follow(Path file, FileChannel channel, long position, BooleanSupplier stop) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Object fileKey = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+        try (WatchService watcher = directory.getFileSystem().newWatchService()) {
+            directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+
+            while (!stop.getAsBoolean()) {
+                // Wait for a change in the directory; the events themselves are not needed,
+                // the state of the file is checked below either way
+                WatchKey key = watcher.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    key.pollEvents();
+                    key.reset();
+                }
+
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    continue; // Rotated away and not recreated yet
+                }
+
+                if (!Objects.equals(attributes.fileKey(), fileKey)) {
+                    // A new file took the name: finish the old one, then start over on the new one
+                    copy(channel, position, channel.size());
+                    channel.close();
+                    channel = FileChannel.open(file, StandardOpenOption.READ);
+                    fileKey = attributes.fileKey();
+                    position = 0;
+                    out.println("tail: " + file.getFileName() + " has been replaced; following new file");
+                } else if (channel.size() < position) {
+                    position = 0;
+                    out.println("tail: " + file.getFileName() + ": file truncated");
+                }
+
+                long size = channel.size();
+                if (size > position) {
+                    copy(channel, position, size);
+                    position = size;
+                }
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Stopped from outside
+        } finally {
+            channel.close();
+        }
+    }
+
+    // Offset of the first of the last count lines
+    private long startOfLastLines(Path file, FileChannel channel, long size, long count) throws IOException {
+        if (count <= 0 || size == 0) {
+            return size;
+        }
+
+        LineIndex index = LineIndexCache.peekComplete(file);
+        if (index != null && index.size() == size) {
+            long first = Math.max(0, index.lineCount() - count);
+            try {
+                long[] checkpoint = index.checkpointBefore(first); // Complete, so this never waits
+                return skipLines(channel, checkpoint[0], first - checkpoint[1], size);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+
+        // A newline at the very end closes the last line, it does not start another one
+        long end = readByte(channel, size - 1) == '\n' ? size - 1 : size;
+        int found = 0;
+        while (end > 0) {
+            long start = Math.max(0, end - BLOCK_SIZE);
+            int read = readBlock(channel, start, (int) (end - start));
+            for (int i = read - 1; i >= 0; i--) {
+                if (block.get(i) == '\n' && ++found == count) {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return 0;
+    }
+
+    private long skipLines(FileChannel channel, long position, long count, long size) throws IOException {
+        while (count > 0 && position < size) {
+            int read = readBlock(channel, position, (int) Math.min(BLOCK_SIZE, size - position));
+            for (int i = 0; i < read; i++) {
+                if (block.get(i) == '\n' && --count == 0) {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return position;
+    }
+
+    // Copy the bytes [from, to) to the output as they are
+    private void copy(FileChannel channel, long from, long to) throws IOException {
+        long position = from;
+        while (position < to) {
+            int read = readBlock(channel, position, (int) Math.min(BLOCK_SIZE, to - position));
+            if (read == 0) {
+                break;
+            }
+            out.write(block.array(), 0, read);
+            position += read;
+        }
+    }
+
+    // Fill the block with up to length bytes from position
+    private int readBlock(FileChannel channel, long position, int length) throws IOException {
+        block.clear();
+        block.limit(length);
+        while (block.hasRemaining()) {
+            if (channel.read(block, position + block.position()) < 0) {
+                break;
+            }
+        }
+        return block.position();
+    }
+
+    private byte readByte(FileChannel channel, long position) throws IOException {
+        readBlock(channel, position, 1);
+        return block.get(0);
+    }
+
+    // Options given to tail, e.g. "tail -n 20 -f app.log"
+    static class Options {
+        long lines = 10;
+        boolean follow = false;
+        String file = null;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 1; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("-n")) {
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("Missing line count for -n");
+                    }
+                    try {
+                        options.lines = Long.parseLong(args[++i]);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid line count for -n: " + args[i]);
+                    }
+                } else if (arg.equals("-f")) {
+                    options.follow = true;
+                } else if (arg.startsWith("-") && arg.length() > 1) {
+                    throw new IllegalArgumentException("Invalid option for tail: " + arg);
+                } else {
+                    options.file = arg;
+                }
+            }
+            if (options.file == null) {
+                throw new IllegalArgumentException("Usage: tail [-n N] [-f] <file_name>");
+            }
+            return options;
+        }
+    }
+}
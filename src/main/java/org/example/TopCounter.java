@@ -0,0 +1,442 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// top N [-f field]: the N most frequent lines, or values of a field, with their counts, e.g.
+// "top 20 -f 1 access.log" for the busiest client IPs.
+// Counting happens in an open-addressing hash table whose keys are UTF-8 bytes packed one after the
+// other into a byte arena and whose counts are a long[], so a line costs no String, no boxed count and
+// no entry object once its key is known. When the table outgrows the memory budget (-S) its entries are
+// appended to PARTITIONS spill files, chosen by the top bits of the key's hash, and the table starts
+// over. At the end each partition is counted on its own, so only about 1/PARTITIONS of the distinct
+// keys are in memory at a time; a partition that is still too big is split again on the next bits.
+// Only the N best keys are kept, in a heap.
+public class TopCounter implements Pipeline.Stage, Closeable {
+
+    private static final long DEFAULT_MEMORY = 64L * 1024 * 1024; // -S default
+    private static final int PARTITION_BITS = 4;
+    private static final int PARTITIONS = 1 << PARTITION_BITS;
+    private static final int MAX_DEPTH = 32 / PARTITION_BITS - 1; // Levels of splitting the hash allows
+
+    // Options given to top, e.g. "top 20 -f 1 access.log" or "top 5 -S 256M -T /data/tmp big.log"
+    static class Options {
+        int count = 0; // N
+        int field = 0; // -f N, count the Nth whitespace-separated field; 0 for the whole line
+        long memory = DEFAULT_MEMORY; // -S size, with an optional K, M or G suffix
+        String tempDir = null; // -T dir, where partitions are spilled; the system temp directory by default
+        Charset encoding = LineScanner.defaultCharset(); // --encoding name, of the files counted
+        List<String> files = new ArrayList<>();
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 1; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("-f") || arg.equals("-S") || arg.equals("-T") || arg.equals("--encoding")) {
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("Missing value for " + arg);
+                    }
+                    String value = args[++i];
+                    if (arg.equals("-f")) {
+                        options.field = positive(arg, value);
+                    } else if (arg.equals("-S")) {
+                        options.memory = ExternalSort.Options.parseSize(value); // Same sizes as sort
+                    } else if (arg.equals("-T")) {
+                        options.tempDir = value;
+                    } else {
+                        options.encoding = LineScanner.charset(value);
+                    }
+                } else if (options.count == 0) {
+                    options.count = positive("top", arg);
+                } else {
+                    options.files.add(arg);
+                }
+            }
+            if (options.count == 0) {
+                throw new IllegalArgumentException("Usage: top <N> [-f field] [-S size] [-T dir] [--encoding name] [file...]");
+            }
+            return options;
+        }
+
+        private static int positive(String option, String value) {
+            try {
+                int number = Integer.parseInt(value);
+                if (number > 0) {
+                    return number;
+                }
+            } catch (NumberFormatException e) {
+                // Reported below
+            }
+            throw new IllegalArgumentException("Invalid value for " + option + ": " + value);
+        }
+    }
+
+    // A key and how often it was seen
+    private record Counted(String key, long count) {
+    }
+
+    private final Options options;
+    private final Pipeline.Stage next;
+    private final Path tempDir;
+    private final Table table;
+    private byte[] scratch = new byte[256]; // The key of the current line, encoded
+    private Path[] partitions; // Created with the first spill
+    private DataOutputStream[] writers;
+
+    TopCounter(Options options, Pipeline.Stage next) {
+        this.options = options;
+        this.next = next;
+        this.tempDir = options.tempDir != null
+                ? Session.current().directory().resolve(options.tempDir)
+                : Paths.get(System.getProperty("java.io.tmpdir"));
+        this.table = new Table(options.memory);
+    }
+
+    @Override
+    public void accept(String line) throws IOException {
+        int start = 0;
+        int end = line.length();
+        if (options.field > 0) {
+            // Find the field without cutting it out of the line
+            int i = 0;
+            for (int field = 1; ; field++) {
+                while (i < end && Character.isWhitespace(line.charAt(i))) {
+                    i++;
+                }
+                start = i;
+                while (i < end && !Character.isWhitespace(line.charAt(i))) {
+                    i++;
+                }
+                if (field == options.field || start == end) {
+                    end = i;
+                    break;
+                }
+            }
+        }
+        int length = encode(line, start, end);
+        table.add(scratch, length, hash(scratch, length), 1);
+        if (table.isFull()) {
+            spill();
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        PriorityQueue<Counted> best = new PriorityQueue<>(options.count + 1, TopCounter::worse);
+        try {
+            if (partitions == null) {
+                table.offerTo(best, options.count);
+            } else {
+                spill();
+                closeAll(writers);
+                writers = null;
+                for (Path partition : partitions) {
+                    countPartition(partition, 1, best);
+                }
+            }
+        } finally {
+            close();
+        }
+        List<Counted> results = new ArrayList<>(best);
+        results.sort((a, b) -> worse(b, a));
+        for (Counted counted : results) {
+            next.accept(String.format("%7d %s", counted.count(), counted.key()));
+        }
+        next.finish();
+    }
+
+    // Negative when a ranks below b: fewer occurrences, or the same and later in key order
+    private static int worse(Counted a, Counted b) {
+        int byCount = Long.compare(a.count(), b.count());
+        return byCount != 0 ? byCount : b.key().compareTo(a.key());
+    }
+
+    // The key as UTF-8 into scratch, without a String or byte[] per line; returns its length
+    private int encode(String line, int start, int end) {
+        if (scratch.length < (end - start) * 3) {
+            scratch = new byte[(end - start) * 3];
+        }
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            char c = line.charAt(i);
+            if (c < 0x80) {
+                scratch[length++] = (byte) c;
+            } else if (c < 0x800) {
+                scratch[length++] = (byte) (0xC0 | c >> 6);
+                scratch[length++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(line.charAt(i + 1))) {
+                int code = Character.toCodePoint(c, line.charAt(++i));
+                scratch[length++] = (byte) (0xF0 | code >> 18);
+                scratch[length++] = (byte) (0x80 | code >> 12 & 0x3F);
+                scratch[length++] = (byte) (0x80 | code >> 6 & 0x3F);
+                scratch[length++] = (byte) (0x80 | code & 0x3F);
+            } else {
+                scratch[length++] = (byte) (0xE0 | c >> 12);
+                scratch[length++] = (byte) (0x80 | c >> 6 & 0x3F);
+                scratch[length++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return length;
+    }
+
+    // FNV-1a over the bytes, mixed so the low bits used for slots and the high bits used for
+    // partitions both depend on every byte
+    private static int hash(byte[] bytes, int length) {
+        int hash = 0x811C9DC5;
+        for (int i = 0; i < length; i++) {
+            hash = (hash ^ bytes[i]) * 0x01000193;
+        }
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+
+    // Partition of the hash at a depth: the top bits first, then the bits below them
+    private static int partitionOf(int hash, int depth) {
+        return hash >>> (32 - PARTITION_BITS * depth) & (PARTITIONS - 1);
+    }
+
+    // Append every entry of the table to its partition file and empty the table
+    private void spill() throws IOException {
+        if (partitions == null) {
+            partitions = new Path[PARTITIONS];
+            writers = openPartitions(partitions);
+        }
+        table.writeTo(writers, 1);
+        table.clear();
+    }
+
+    // Count the keys of one partition file; when they do not fit, split it on the next hash bits
+    private void countPartition(Path partition, int depth, PriorityQueue<Counted> best) throws IOException {
+        table.clear();
+        Path[] split = null;
+        DataOutputStream[] splitWriters = null;
+        try {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(partition)))) {
+                byte[] key = new byte[256];
+                while (true) {
+                    int length;
+                    try {
+                        length = in.readInt();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    if (key.length < length) {
+                        key = new byte[Math.max(length, key.length * 2)];
+                    }
+                    in.readFully(key, 0, length);
+                    table.add(key, length, hash(key, length), in.readLong());
+                    if (table.isFull() && table.size > 1 && depth < MAX_DEPTH) {
+                        if (split == null) {
+                            split = new Path[PARTITIONS];
+                            splitWriters = openPartitions(split);
+                        }
+                        table.writeTo(splitWriters, depth + 1);
+                        table.clear();
+                    }
+                }
+            }
+            Files.delete(partition);
+            if (split == null) {
+                table.offerTo(best, options.count);
+                return;
+            }
+            table.writeTo(splitWriters, depth + 1);
+            table.clear();
+            closeAll(splitWriters);
+            splitWriters = null;
+            for (Path part : split) {
+                countPartition(part, depth + 1, best);
+            }
+        } finally {
+            Files.deleteIfExists(partition);
+            if (splitWriters != null) {
+                closeAll(splitWriters);
+            }
+            if (split != null) {
+                deleteAll(split);
+            }
+        }
+    }
+
+    // A new temporary file and writer for each partition
+    private DataOutputStream[] openPartitions(Path[] paths) throws IOException {
+        DataOutputStream[] opened = new DataOutputStream[paths.length];
+        try {
+            for (int i = 0; i < paths.length; i++) {
+                paths[i] = Files.createTempFile(tempDir, "mycli-top", ".part");
+                opened[i] = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(paths[i])));
+            }
+        } catch (IOException e) {
+            closeAll(opened);
+            deleteAll(paths);
+            throw e;
+        }
+        return opened;
+    }
+
+    private static void closeAll(DataOutputStream[] streams) throws IOException {
+        for (DataOutputStream stream : streams) {
+            if (stream != null) {
+                stream.close();
+            }
+        }
+    }
+
+    private static void deleteAll(Path[] paths) throws IOException {
+        for (Path path : paths) {
+            if (path != null) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    // Remove the partition files of a count that did not finish
+    @Override
+    public void close() throws IOException {
+        if (writers != null) {
+            closeAll(writers);
+            writers = null;
+        }
+        if (partitions != null) {
+            deleteAll(partitions);
+        }
+    }
+
+    // Open-addressing table of byte keys with linear probing. Slot i holds the arena offset, length,
+    // hash and count of its key in four primitive arrays; a length of -1 marks an empty slot.
+    private static final class Table {
+        private static final int SLOT_BYTES = 4 + 4 + 4 + 8;
+
+        private final long budget;
+        private final int initialCapacity; // A quarter of the budget at most, so a small -S still counts
+        private int[] offsets;
+        private int[] lengths;
+        private int[] hashes;
+        private long[] counts;
+        private int size = 0;
+        private byte[] arena = new byte[4096];
+        private int arenaSize = 0;
+
+        Table(long budget) {
+            this.budget = budget;
+            this.initialCapacity = (int) Math.max(16, Math.min(1 << 12, Long.highestOneBit(budget / 4 / SLOT_BYTES)));
+            allocate(initialCapacity);
+        }
+
+        private void allocate(int capacity) {
+            offsets = new int[capacity];
+            lengths = new int[capacity];
+            hashes = new int[capacity];
+            counts = new long[capacity];
+            Arrays.fill(lengths, -1);
+        }
+
+        void add(byte[] key, int length, int hash, long count) {
+            int mask = lengths.length - 1;
+            int slot = hash & mask;
+            while (lengths[slot] >= 0) {
+                if (hashes[slot] == hash && lengths[slot] == length
+                        && Arrays.equals(arena, offsets[slot], offsets[slot] + length, key, 0, length)) {
+                    counts[slot] += count;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (arenaSize + length > arena.length) {
+                arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + length));
+            }
+            System.arraycopy(key, 0, arena, arenaSize, length);
+            offsets[slot] = arenaSize;
+            lengths[slot] = length;
+            hashes[slot] = hash;
+            counts[slot] = count;
+            arenaSize += length;
+            if (++size * 2 > lengths.length) {
+                grow();
+            }
+        }
+
+        private void grow() {
+            int[] oldOffsets = offsets;
+            int[] oldLengths = lengths;
+            int[] oldHashes = hashes;
+            long[] oldCounts = counts;
+            allocate(oldLengths.length * 2);
+            int mask = lengths.length - 1;
+            for (int i = 0; i < oldLengths.length; i++) {
+                if (oldLengths[i] >= 0) {
+                    int slot = oldHashes[i] & mask;
+                    while (lengths[slot] >= 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    offsets[slot] = oldOffsets[i];
+                    lengths[slot] = oldLengths[i];
+                    hashes[slot] = oldHashes[i];
+                    counts[slot] = oldCounts[i];
+                }
+            }
+        }
+
+        // Over the memory budget: the slots and the arena together
+        boolean isFull() {
+            return (long) lengths.length * SLOT_BYTES + arena.length > budget && size > 0;
+        }
+
+        void clear() {
+            if ((long) lengths.length * SLOT_BYTES > budget / 2) {
+                allocate(initialCapacity); // Start small again, the next partition may have few keys
+            } else {
+                Arrays.fill(lengths, -1);
+            }
+            if (arena.length > budget / 2) {
+                arena = new byte[4096];
+            }
+            size = 0;
+            arenaSize = 0;
+        }
+
+        void writeTo(DataOutputStream[] writers, int depth) throws IOException {
+            for (int i = 0; i < lengths.length; i++) {
+                if (lengths[i] >= 0) {
+                    DataOutputStream writer = writers[partitionOf(hashes[i], depth)];
+                    writer.writeInt(lengths[i]);
+                    writer.write(arena, offsets[i], lengths[i]);
+                    writer.writeLong(counts[i]);
+                }
+            }
+        }
+
+        // Keep the n best entries in the heap, whose head is the worst of them; keys become Strings
+        // only when they make it into the heap
+        void offerTo(PriorityQueue<Counted> best, int n) {
+            for (int i = 0; i < lengths.length; i++) {
+                if (lengths[i] < 0) {
+                    continue;
+                }
+                if (best.size() == n && counts[i] < best.peek().count()) {
+                    continue;
+                }
+                best.add(new Counted(new String(arena, offsets[i], lengths[i], StandardCharsets.UTF_8), counts[i]));
+                if (best.size() > n) {
+                    best.poll();
+                }
+            }
+        }
+    }
+}
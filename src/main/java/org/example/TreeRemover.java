@@ -0,0 +1,169 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SecureDirectoryStream;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+// rm -r: deletes a tree bottom-up in parallel. Each directory is a ForkJoin task that forks its
+// subdirectories and deletes its files in batches on other threads, then removes itself once all of
+// them are gone. When the platform offers a SecureDirectoryStream the files are unlinked relative to
+// the open directory, which saves resolving the full path for every one of them. A semaphore caps the
+// delete calls in flight, so a large tree does not flood a shared filesystem. Symbolic links are
+// removed, never followed.
+public class TreeRemover {
+
+    private static final int BATCH_SIZE = 256; // Files deleted by one task
+
+    // What rm -r removed
+    static class Summary {
+        final AtomicLong files = new AtomicLong();
+        final AtomicLong directories = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong(); // Sizes of the removed files
+        final Queue<String> errors = new ConcurrentLinkedQueue<>();
+        long elapsedNanos;
+    }
+
+    private final int parallelism;
+    private final Semaphore inFlight;
+
+    TreeRemover(int parallelism, int maxInFlight) {
+        this.parallelism = parallelism;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    Summary remove(Path root) {
+        Summary summary = new Summary();
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new RemoveTask(root, summary));
+        } finally {
+            pool.shutdown();
+        }
+        summary.elapsedNanos = System.nanoTime() - start;
+        return summary;
+    }
+
+    // A directory with everything in it, or a single file
+    private class RemoveTask extends RecursiveAction {
+        private final Path path;
+        private final Summary summary;
+
+        RemoveTask(Path path, Summary summary) {
+            this.path = path;
+            this.summary = summary;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                if (!attributes.isDirectory()) {
+                    delete(null, path, false, attributes.size(), summary);
+                    return;
+                }
+                removeContents();
+                delete(null, path, true, 0, summary); // Fails, as it should, if something could not be removed
+            } catch (IOException e) {
+                summary.errors.add(path + ": " + e.getMessage());
+            }
+        }
+
+        // The files are deleted while the directory is open, its subdirectories only once it is closed,
+        // so no more directories are open at once than there are tasks running, however deep the tree
+        private void removeContents() throws IOException {
+            List<RemoveTask> directories = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+                SecureDirectoryStream<Path> secure = stream instanceof SecureDirectoryStream
+                        ? (SecureDirectoryStream<Path>) stream : null;
+                List<BatchTask> tasks = new ArrayList<>();
+                List<Path> files = new ArrayList<>();
+                List<Long> sizes = new ArrayList<>();
+                for (Path child : stream) {
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = DirectoryLister.readAttributes(secure, child);
+                    } catch (IOException e) {
+                        summary.errors.add(child + ": " + e.getMessage());
+                        continue;
+                    }
+                    if (attributes.isDirectory()) {
+                        directories.add(new RemoveTask(child, summary));
+                    } else {
+                        files.add(child);
+                        sizes.add(attributes.size());
+                        if (files.size() == BATCH_SIZE) {
+                            tasks.add(new BatchTask(secure, files, sizes, summary));
+                            files = new ArrayList<>();
+                            sizes = new ArrayList<>();
+                        }
+                    }
+                }
+                if (!files.isEmpty()) {
+                    tasks.add(new BatchTask(secure, files, sizes, summary));
+                }
+                invokeAll(tasks); // The stream stays open until every batch is done
+            }
+            invokeAll(directories);
+        }
+    }
+
+    // Files of one directory, deleted together
+    private class BatchTask extends RecursiveAction {
+        private final SecureDirectoryStream<Path> directory;
+        private final List<Path> files;
+        private final List<Long> sizes;
+        private final Summary summary;
+
+        BatchTask(SecureDirectoryStream<Path> directory, List<Path> files, List<Long> sizes, Summary summary) {
+            this.directory = directory;
+            this.files = files;
+            this.sizes = sizes;
+            this.summary = summary;
+        }
+
+        @Override
+        protected void compute() {
+            for (int i = 0; i < files.size(); i++) {
+                try {
+                    delete(directory, files.get(i), false, sizes.get(i), summary);
+                } catch (IOException e) {
+                    summary.errors.add(files.get(i) + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Delete one file or empty directory, relative to the open directory when there is one
+    private void delete(SecureDirectoryStream<Path> directory, Path path, boolean isDirectory, long size,
+                        Summary summary) throws IOException {
+        inFlight.acquireUninterruptibly();
+        try {
+            if (directory != null) {
+                directory.deleteFile(path.getFileName());
+            } else {
+                Files.delete(path);
+            }
+        } finally {
+            inFlight.release();
+        }
+        if (isDirectory) {
+            summary.directories.incrementAndGet();
+        } else {
+            summary.files.incrementAndGet();
+            summary.bytes.addAndGet(size);
+        }
+    }
+}
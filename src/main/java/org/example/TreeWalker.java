@@ -0,0 +1,160 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SecureDirectoryStream;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Parallel walk of a directory tree, shared by ls -R and du.
+// Every directory is a RecursiveTask that reads its entries, forks one task per subdirectory and adds
+// the results of its children to its own, so sizes and counts are aggregated bottom-up. Nodes below
+// keepDepth are folded into their parent and dropped, so du -s on a huge tree only holds the tasks
+// in flight. The time spent reading each directory is recorded, and the slowest ones are kept to
+// point at slow (e.g. network mounted) subtrees.
+public class TreeWalker {
+
+    private static final int SLOWEST_KEPT = 10;
+
+    // One directory and the totals of everything below it
+    static class Node {
+        final Path path;
+        final int depth; // 0 for the directory the walk started at
+        long bytes = 0; // Sizes of all files in the subtree
+        long files = 0; // Non-directories in the subtree
+        long directories = 0; // Directories in the subtree, not counting this one
+        long listNanos = 0; // Time spent reading this directory alone
+        long subtreeNanos = 0; // Time spent reading every directory in the subtree
+        final List<DirectoryLister.Entry> entries = new ArrayList<>(); // Only filled when entries are kept
+        final List<Node> children = new ArrayList<>();
+
+        Node(Path path, int depth) {
+            this.path = path;
+            this.depth = depth;
+        }
+    }
+
+    // Time spent reading one directory
+    record Timing(Path path, long nanos) {
+    }
+
+    private final int parallelism;
+    private final int maxDepth; // Directories deeper than this are not read
+    private final int keepDepth; // Nodes deeper than this are only counted in their parent
+    private final boolean includeHidden;
+    private final boolean keepEntries;
+    private final ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+    private final PriorityQueue<Timing> slowest = new PriorityQueue<>(Comparator.comparingLong(Timing::nanos));
+
+    TreeWalker(int parallelism, int maxDepth, int keepDepth, boolean includeHidden, boolean keepEntries) {
+        this.parallelism = parallelism;
+        this.maxDepth = maxDepth;
+        this.keepDepth = keepDepth;
+        this.includeHidden = includeHidden;
+        this.keepEntries = keepEntries;
+    }
+
+    Node walk(Path root) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.invoke(new DirectoryTask(root, 0));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Directories that could not be read, with the reason
+    List<String> errors() {
+        return new ArrayList<>(errors);
+    }
+
+    // The directories that took longest to read, slowest first
+    List<Timing> slowest() {
+        List<Timing> timings;
+        synchronized (slowest) {
+            timings = new ArrayList<>(slowest);
+        }
+        timings.sort(Comparator.comparingLong(Timing::nanos).reversed());
+        return timings;
+    }
+
+    private void recordTiming(Path path, long nanos) {
+        synchronized (slowest) {
+            slowest.add(new Timing(path, nanos));
+            if (slowest.size() > SLOWEST_KEPT) {
+                slowest.poll(); // Drop the fastest
+            }
+        }
+    }
+
+    private class DirectoryTask extends RecursiveTask<Node> {
+        private final Path path;
+        private final int depth;
+
+        DirectoryTask(Path path, int depth) {
+            this.path = path;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Node compute() {
+            Node node = new Node(path, depth);
+            List<DirectoryTask> subtasks = new ArrayList<>();
+
+            long start = System.nanoTime();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+                SecureDirectoryStream<Path> secure = stream instanceof SecureDirectoryStream
+                        ? (SecureDirectoryStream<Path>) stream : null;
+                for (Path child : stream) {
+                    if (!includeHidden && child.getFileName().toString().startsWith(".")) {
+                        continue;
+                    }
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = DirectoryLister.readAttributes(secure, child);
+                    } catch (IOException e) {
+                        continue; // Removed while we were reading the directory
+                    }
+                    if (keepEntries) {
+                        node.entries.add(new DirectoryLister.Entry(child.getFileName(), attributes));
+                    }
+                    if (attributes.isDirectory()) {
+                        node.directories++;
+                        if (depth < maxDepth) {
+                            subtasks.add(new DirectoryTask(child, depth + 1));
+                        }
+                    } else {
+                        node.files++;
+                        node.bytes += attributes.size();
+                    }
+                }
+            } catch (IOException e) {
+                errors.add(path + ": " + e.getMessage());
+            }
+            node.listNanos = System.nanoTime() - start;
+            node.subtreeNanos = node.listNanos;
+            recordTiming(path, node.listNanos);
+
+            invokeAll(subtasks);
+            for (DirectoryTask subtask : subtasks) {
+                Node child = subtask.join();
+                node.bytes += child.bytes;
+                node.files += child.files;
+                node.directories += child.directories;
+                node.subtreeNanos += child.subtreeNanos;
+                if (child.depth <= keepDepth) {
+                    node.children.add(child);
+                }
+            }
+            return node;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Line, word and byte counts for the wc command.
+// Files are memory-mapped in large windows and counted in one pass over the raw bytes,
+// so nothing is allocated per line and files larger than the heap can be counted.
+public class WordCount {
+
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024; // Bytes mapped at a time
+
+    // Bytes treated as word separators (same set as C isspace in the default locale)
+    private static final boolean[] WHITESPACE = new boolean[256];
+
+    static {
+        for (char c : new char[]{' ', '\t', '\n', '\r', '\f', 0x0B}) {
+            WHITESPACE[c] = true;
+        }
+    }
+
+    long lines = 0;
+    long words = 0;
+    long bytes = 0;
+    private boolean startsInWord = false; // First byte counted is part of a word
+    private boolean inWord = false; // Carried across windows so a word split by a window edge counts once
+
+    // Count a whole file window by window
+    static WordCount count(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return count(channel, 0, channel.size());
+        }
+    }
+
+    // Count the byte range [start, end) of the channel
+    static WordCount count(FileChannel channel, long start, long end) throws IOException {
+        WordCount result = new WordCount();
+        for (long position = start; position < end; position += WINDOW_SIZE) {
+            long length = Math.min(WINDOW_SIZE, end - position);
+            result.update(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+        }
+        return result;
+    }
+
+    // Split the file into byte ranges and count them on a ForkJoinPool with the given parallelism.
+    // Small files are not worth splitting and are counted on the calling thread.
+    static WordCount countParallel(Path file, int parallelism) throws IOException {
+        return countParallel(file, parallelism, WINDOW_SIZE);
+    }
+
+    // Same as above with ranges of at most chunkSize bytes
+    static WordCount countParallel(Path file, int parallelism, long chunkSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (parallelism <= 1 || size <= chunkSize) {
+                return count(channel, 0, size);
+            }
+
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                return pool.invoke(new RangeTask(channel, 0, size, chunkSize));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    // Join the counts of two adjacent ranges. A word running across the boundary was
+    // counted once on each side, so it is taken off again.
+    static WordCount combine(WordCount left, WordCount right) {
+        if (left.bytes == 0) {
+            return right;
+        }
+        if (right.bytes == 0) {
+            return left;
+        }
+        WordCount result = new WordCount();
+        result.lines = left.lines + right.lines;
+        result.words = left.words + right.words - (left.inWord && right.startsInWord ? 1 : 0);
+        result.bytes = left.bytes + right.bytes;
+        result.startsInWord = left.startsInWord;
+        result.inWord = right.inWord;
+        return result;
+    }
+
+    // Count a byte range, halving it until each piece fits in one chunk
+    private static class RangeTask extends RecursiveTask<WordCount> {
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        private final long chunkSize;
+
+        RangeTask(FileChannel channel, long start, long end, long chunkSize) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected WordCount compute() {
+            if (end - start <= chunkSize) {
+                try {
+                    return count(channel, start, end);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            long middle = start + (end - start) / 2;
+            RangeTask left = new RangeTask(channel, start, middle, chunkSize);
+            RangeTask right = new RangeTask(channel, middle, end, chunkSize);
+            left.fork();
+            WordCount rightCount = right.compute();
+            return combine(left.join(), rightCount);
+        }
+    }
+
+    // Count every byte of the mapped window
+    void update(ByteBuffer window) {
+        int limit = window.limit();
+        if (bytes == 0 && limit > 0) {
+            startsInWord = !WHITESPACE[window.get(0) & 0xFF];
+        }
+        long newlines = 0;
+        long newWords = 0;
+        boolean wasInWord = inWord;
+        for (int i = 0; i < limit; i++) {
+            int b = window.get(i) & 0xFF;
+            boolean space = WHITESPACE[b];
+            newlines += b == '\n' ? 1 : 0;
+            newWords += (!space && !wasInWord) ? 1 : 0;
+            wasInWord = !space;
+        }
+        lines += newlines;
+        words += newWords;
+        bytes += limit;
+        inWord = wasInWord;
+    }
+
+    // Count one line handed over by a pipeline, as if it had been read with its trailing newline
+    void update(CharSequence line) {
+        boolean wasInWord = false;
+        long encodedLength = 1; // The newline removed by the reader
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            boolean space = Character.isWhitespace(c);
+            if (!space && !wasInWord) {
+                words++;
+            }
+            wasInWord = !space;
+
+            // UTF-8 length of the character, surrogate pairs take four bytes together
+            if (c < 0x80) {
+                encodedLength += 1;
+            } else if (c < 0x800) {
+                encodedLength += 2;
+            } else if (Character.isSurrogate(c)) {
+                encodedLength += 2;
+            } else {
+                encodedLength += 3;
+            }
+        }
+        lines++;
+        bytes += encodedLength;
+    }
+
+    // Print the requested counts; with no option selected all three are shown
+    List<String> report(Options options) {
+        boolean all = !options.lines && !options.words && !options.bytes;
+        List<String> report = new ArrayList<>(3);
+        if (all || options.lines) {
+            report.add("Line Count: " + lines);
+        }
+        if (all || options.words) {
+            report.add("Word Count: " + words);
+        }
+        if (all || options.bytes) {
+            report.add("Byte Count: " + bytes);
+        }
+        return report;
+    }
+
+    // Options given to wc, e.g. "wc -l -w file", "wc -lw file" or "wc --parallel 8 file"
+    static class Options {
+        boolean lines = false;
+        boolean words = false;
+        boolean bytes = false;
+        String file = null;
+        int parallelism = 1; // Number of threads used by --parallel
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 1; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--parallel")) {
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("Missing thread count for --parallel");
+                    }
+                    try {
+                        options.parallelism = Integer.parseInt(args[++i]);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid thread count for --parallel: " + args[i]);
+                    }
+                    if (options.parallelism < 1) {
+                        throw new IllegalArgumentException("Invalid thread count for --parallel: " + args[i]);
+                    }
+                } else if (arg.startsWith("-") && arg.length() > 1) {
+                    for (char flag : arg.substring(1).toCharArray()) {
+                        switch (flag) {
+                            case 'l':
+                                options.lines = true;
+                                break;
+                            case 'w':
+                                options.words = true;
+                                break;
+                            case 'c':
+                                options.bytes = true;
+                                break;
+                            default:
+                                throw new IllegalArgumentException("Invalid option for wc: " + arg);
+                        }
+                    }
+                } else {
+                    options.file = arg;
+                }
+            }
+            return options;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+class BatchRunnerTest {
+
+    @TempDir
+    static Path tempDir;
+
+    @RegisterExtension
+    final CapturedOutput console = CapturedOutput.in(() -> tempDir);
+
+    private final ByteArrayOutputStream errorStream = new ByteArrayOutputStream();
+    private final PrintStream originalErr = System.err;
+
+    @BeforeEach
+    void setUp() {
+        System.setErr(new PrintStream(errorStream, true));
+    }
+
+    @AfterEach
+    void tearDown() {
+        System.setErr(originalErr);
+    }
+
+    private String output() {
+        return console.output().trim();
+    }
+
+    @Test
+    void testCommandsFromArgument() {
+        BatchRunner.main(new String[]{"-c", "mkdir batch; cd batch ;; pwd"});
+
+        assertTrue(output().endsWith("\n" + tempDir.resolve("batch")), output());
+        String timings = errorStream.toString();
+        assertTrue(timings.contains(" ms  mkdir batch"), timings);
+        assertTrue(timings.contains(" ms  cd batch"), timings);
+        assertTrue(timings.contains("total for 3 commands"), timings);
+    }
+
+    @Test
+    void testScriptStopsAtExit() throws IOException {
+        Files.writeString(tempDir.resolve("nightly.cli"), String.join("\n",
+                "# Prepare the output directory",
+                "mkdir out",
+                "",
+                "touch out/a.txt; ls out",
+                "exit",
+                "touch out/b.txt"));
+
+        BatchRunner.main(new String[]{"-f", "nightly.cli"});
+
+        assertTrue(output().endsWith("File created: out/a.txt\na.txt\nExiting CLI..."), output());
+        assertFalse(Files.exists(tempDir.resolve("out/b.txt")));
+        assertTrue(errorStream.toString().contains("total for 4 commands"));
+    }
+
+    @Test
+    void testMissingScript() {
+        BatchRunner.main(new String[]{"-f", "missing.cli"});
+
+        assertTrue(output().startsWith("Error: Could not read script."), output());
+        assertEquals("", errorStream.toString());
+    }
+
+    @Test
+    void testQuotedSemicolonDoesNotSplit() throws IOException {
+        Files.writeString(tempDir.resolve("semi;colon.txt"), "kept\n");
+
+        BatchRunner.main(new String[]{"-c", "cat 'semi;colon.txt'; pwd # the rest is a comment"});
+
+        assertTrue(output().startsWith("kept\n"), output());
+        assertTrue(errorStream.toString().contains(" ms  cat 'semi;colon.txt'"));
+        assertTrue(errorStream.toString().contains(" ms  pwd\n") || errorStream.toString().contains(" ms  pwd\r\n"));
+        assertTrue(errorStream.toString().contains("total for 2 commands"));
+    }
+
+    @Test
+    void testSummaryOfLongBatchIsBounded() {
+        BatchRunner.main(new String[]{"-c", "pwd;".repeat(1005)});
+
+        String timings = errorStream.toString().replace("\r\n", "\n");
+        assertEquals(1000, timings.split(" ms  pwd\n", -1).length - 1);
+        assertTrue(timings.contains("...  5 more commands not listed\n"), timings);
+        assertTrue(timings.contains("total for 1005 commands"), timings);
+    }
+
+    @Test
+    void testTerminalIsDecidedByStdin() throws IOException {
+        Path terminal = Files.createSymbolicLink(tempDir.resolve("fd-terminal"), Path.of("/dev/pts/3"));
+        Path pipe = Files.createSymbolicLink(tempDir.resolve("fd-pipe"), Path.of("pipe:[4026]"));
+        Path file = Files.createSymbolicLink(tempDir.resolve("fd-file"), tempDir.resolve("commands.cli"));
+
+        assertEquals(Boolean.TRUE, BatchRunner.isTerminal(terminal));
+        assertEquals(Boolean.FALSE, BatchRunner.isTerminal(pipe));
+        assertEquals(Boolean.FALSE, BatchRunner.isTerminal(file));
+        assertNull(BatchRunner.isTerminal(tempDir.resolve("missing")));
+    }
+}
@@ -0,0 +1,63 @@
+package org.example;
+
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.function.Supplier;
+
+// What the commands of a test print to System.out, registered on the test class with
+//   @RegisterExtension
+//   final CapturedOutput console = CapturedOutput.in(() -> tempDir);
+// in() also runs each test with MyCLI.currentDir set to the directory; both are restored afterwards.
+class CapturedOutput implements BeforeEachCallback, AfterEachCallback {
+
+    private final Supplier<Path> directory; // null: currentDir is left alone
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private PrintStream originalOut;
+    private Path originalDir;
+
+    private CapturedOutput(Supplier<Path> directory) {
+        this.directory = directory;
+    }
+
+    // Only System.out
+    static CapturedOutput of() {
+        return new CapturedOutput(null);
+    }
+
+    // System.out, with the commands running in the directory
+    static CapturedOutput in(Supplier<Path> directory) {
+        return new CapturedOutput(directory);
+    }
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        originalOut = System.out;
+        System.setOut(new PrintStream(bytes, true));
+        if (directory != null) {
+            originalDir = MyCLI.currentDir;
+            MyCLI.currentDir = directory.get();
+        }
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        System.setOut(originalOut);
+        if (directory != null) {
+            MyCLI.currentDir = originalDir;
+        }
+    }
+
+    // Everything printed so far, with \n line endings
+    String output() {
+        return bytes.toString().replace("\r\n", "\n");
+    }
+
+    void reset() {
+        bytes.reset();
+    }
+}
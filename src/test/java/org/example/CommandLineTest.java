@@ -0,0 +1,125 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+class CommandLineTest {
+
+    // Plugin registered in META-INF/services of the tests
+    public static class Greet implements Command {
+        @Override
+        public String name() {
+            return "greet";
+        }
+
+        @Override
+        public void execute(String[] args) {
+            Session.current().out().println("Hello " + String.join(",", Arrays.copyOfRange(args, 1, args.length)));
+        }
+
+        @Override
+        public String help() {
+            return "  greet <name...> - Greet someone";
+        }
+    }
+
+    @TempDir
+    static Path tempDir;
+
+    @RegisterExtension
+    final CapturedOutput console = CapturedOutput.in(() -> tempDir);
+
+    @BeforeAll
+    static void setUpClass() throws IOException {
+        Files.writeString(tempDir.resolve("a.log"), "alpha\n");
+        Files.writeString(tempDir.resolve("b.log"), "beta\n");
+        Files.writeString(tempDir.resolve("my notes.txt"), "first ERROR\nsecond\n");
+    }
+
+    private String output() {
+        return console.output();
+    }
+
+    private static List<String> words(CommandLine.Command command) {
+        return Arrays.asList(command.args());
+    }
+
+    @Test
+    void testParseQuotesAndOperators() {
+        List<CommandLine.Statement> statements = CommandLine.parse(
+                "cat \"my notes.txt\"|grep 'a|b' x\\ y >>out.txt; ls -l # listing");
+
+        assertEquals(2, statements.size());
+        CommandLine.Statement first = statements.get(0);
+        assertEquals("cat \"my notes.txt\"|grep 'a|b' x\\ y >>out.txt", first.text());
+        assertEquals(List.of("cat", "my notes.txt"), words(first.pipeline().get(0)));
+        CommandLine.Command grep = first.pipeline().get(1);
+        assertEquals(List.of("grep", "a|b", "x y"), words(grep));
+        assertTrue(grep.words().get(1).quoted());
+        assertFalse(grep.words().get(0).quoted());
+        assertEquals("out.txt", grep.redirect().target().text());
+        assertTrue(grep.redirect().append());
+        assertEquals(List.of("ls", "-l"), words(statements.get(1).pipeline().get(0)));
+    }
+
+    @Test
+    void testParseErrors() {
+        assertEquals("Unterminated quote: \"", assertThrows(IllegalArgumentException.class,
+                () -> CommandLine.parse("cat \"open")).getMessage());
+        assertEquals("Missing command after |", assertThrows(IllegalArgumentException.class,
+                () -> CommandLine.parse("cat a |")).getMessage());
+        assertEquals("Missing file name after >", assertThrows(IllegalArgumentException.class,
+                () -> CommandLine.parse("ls >")).getMessage());
+        assertTrue(CommandLine.parse(" ; ;# nothing").isEmpty());
+    }
+
+    @Test
+    void testQuotedWordsAreNotExpanded() {
+        MyCLI.execute("cat *.log");
+        assertEquals("alpha\nbeta\n", output());
+
+        console.reset();
+        MyCLI.execute("cat '*.log'");
+        assertEquals("Error: File not found.\n", output());
+    }
+
+    @Test
+    void testQuotedFileNameWithSpaces() {
+        MyCLI.execute("cat \"my notes.txt\" | grep ERROR");
+
+        assertEquals("first ERROR\n", output());
+    }
+
+    @Test
+    void testRedirectAnyCommand() throws IOException {
+        MyCLI.execute("pwd > listing.txt; cat *.log >> listing.txt");
+
+        assertEquals(tempDir + "\nalpha\nbeta\n", Files.readString(tempDir.resolve("listing.txt")).replace("\r\n", "\n"));
+        assertTrue(output().contains("Output written to " + tempDir.resolve("listing.txt")));
+    }
+
+    @Test
+    void testRedirectRefusesToTruncateItsInput() throws IOException {
+        MyCLI.execute("cat b.log > b.log");
+
+        assertEquals("Error: Input file is the same as the output file.\n", output());
+        assertEquals("beta\n", Files.readString(tempDir.resolve("b.log")));
+    }
+
+    @Test
+    void testPluginCommand() {
+        MyCLI.execute("greet a{1,2} 'b c'");
+        MyCLI.execute("help");
+
+        assertTrue(output().startsWith("Hello a1,a2,b c\n"), output());
+        assertTrue(output().contains("  greet <name...> - Greet someone\n"));
+    }
+}
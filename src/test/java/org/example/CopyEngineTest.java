@@ -0,0 +1,138 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+class CopyEngineTest {
+
+    @TempDir
+    static Path tempDir;
+
+    @RegisterExtension
+    final CapturedOutput console = CapturedOutput.of();
+
+    @Test
+    void testMoveCopiesTreeAndDeletesSource() throws IOException {
+        // The fallback used across filesystems, run directly
+        Path src = tempDir.resolve("srcTree");
+        Files.createDirectories(src.resolve("sub"));
+        byte[] data = new byte[(int) CopyEngine.CHUNK_SIZE + 1000];
+        data[data.length - 1] = 42;
+        Files.write(src.resolve("sub/big.bin"), data);
+        Files.writeString(src.resolve("small.txt"), "hello");
+        FileTime time = FileTime.fromMillis(1_000_000_000_000L);
+        Files.setLastModifiedTime(src.resolve("small.txt"), time);
+
+        List<Long> progress = new ArrayList<>();
+        Path dest = tempDir.resolve("destTree");
+        new CopyEngine((file, done, total) -> {
+            if (file.getFileName().toString().equals("big.bin")) {
+                progress.add(done);
+            }
+        }).move(src, dest);
+
+        assertFalse(Files.exists(src));
+        assertArrayEquals(data, Files.readAllBytes(dest.resolve("sub/big.bin")));
+        assertEquals("hello", Files.readString(dest.resolve("small.txt")));
+        assertEquals(time, Files.getLastModifiedTime(dest.resolve("small.txt")));
+        assertEquals(List.of(CopyEngine.CHUNK_SIZE, (long) data.length), progress);
+    }
+
+    @Test
+    void testMoveManyWithGlob() throws IOException {
+        Path logs = Files.createDirectory(tempDir.resolve("logs"));
+        Path archive = Files.createDirectory(tempDir.resolve("archive"));
+        for (int i = 0; i < 20; i++) {
+            Files.writeString(logs.resolve("app." + i + ".log"), "line " + i);
+        }
+        Files.writeString(logs.resolve("keep.txt"), "stays");
+
+        MyCLI.moveOrRename(new String[]{"mv", "--parallel", "4", logs + "/*.log", logs.resolve("missing.log").toString(), archive.toString()});
+
+        String output = console.output().trim();
+        assertEquals("Error: " + logs.resolve("missing.log") + ": Source file or directory does not exist.\n"
+                + "Moved 20 of 21 items to " + archive, output);
+        try (Stream<Path> moved = Files.list(archive)) {
+            assertEquals(20, moved.count());
+        }
+        assertEquals("line 7", Files.readString(archive.resolve("app.7.log")));
+        assertTrue(Files.exists(logs.resolve("keep.txt")));
+    }
+
+    @Test
+    void testMoveManyNeedsDirectory() throws IOException {
+        Path a = Files.writeString(tempDir.resolve("a.txt"), "a");
+        Path b = Files.writeString(tempDir.resolve("b.txt"), "b");
+
+        MyCLI.moveOrRename(new String[]{"mv", a.toString(), b.toString(), tempDir.resolve("nowhere").toString()});
+
+        assertEquals("Error: Destination must be an existing directory when moving several files.", console.output().trim());
+        assertTrue(Files.exists(a));
+    }
+
+    @Test
+    void testCopyTreeKeepsAttributes() throws IOException {
+        Path src = tempDir.resolve("release");
+        Files.createDirectories(src.resolve("lib/deep"));
+        Files.writeString(src.resolve("lib/a.jar"), "jar");
+        Files.writeString(src.resolve("lib/deep/b.txt"), "bee");
+        FileTime time = FileTime.fromMillis(1_200_000_000_000L);
+        Files.setLastModifiedTime(src.resolve("lib/deep/b.txt"), time);
+        Path staging = Files.createDirectory(tempDir.resolve("staging"));
+
+        MyCLI.copy(new String[]{"cp", "-r", src.toString(), staging.toString()});
+
+        Path target = staging.resolve("release");
+        assertEquals("Copied 2 files (6 bytes) to " + target, console.output().trim());
+        assertEquals("bee", Files.readString(target.resolve("lib/deep/b.txt")));
+        assertEquals(time, Files.getLastModifiedTime(target.resolve("lib/deep/b.txt")));
+        assertTrue(Files.exists(src.resolve("lib/a.jar")), "cp keeps the source");
+        assertFalse(Files.exists(staging.resolve("release.cp-journal")), "journal is removed after a complete copy");
+
+        console.reset();
+        MyCLI.copy(new String[]{"cp", src.toString(), staging.toString()});
+        assertEquals("Error: " + src + " is a directory (use cp -r).", console.output().trim());
+    }
+
+    @Test
+    void testCopyResumesFromJournal() throws IOException {
+        Path src = tempDir.resolve("artifacts");
+        Files.createDirectories(src);
+        byte[] data = new byte[(int) CopyEngine.CHUNK_SIZE + 1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        Files.write(src.resolve("big.bin"), data);
+        Files.writeString(src.resolve("done.txt"), "real");
+
+        // State left by an interrupted run: done.txt finished, big.bin one chunk in
+        Path target = tempDir.resolve("artifactsCopy");
+        Files.createDirectories(target);
+        Files.writeString(target.resolve("done.txt"), "kept"); // Same size, so it is trusted and skipped
+        Files.write(target.resolve("big.bin"), java.util.Arrays.copyOf(data, (int) CopyEngine.CHUNK_SIZE));
+        Files.writeString(tempDir.resolve("artifactsCopy.cp-journal"), "mycli-cp 1 " + src.toAbsolutePath().normalize() + "\n"
+                + "D done.txt\n"
+                + "P " + CopyEngine.CHUNK_SIZE + " " + data.length + " big.bin\n"
+                + "P 9999");
+
+        MyCLI.copy(new String[]{"cp", "-r", src.toString(), target.toString()});
+
+        String output = console.output().trim();
+        assertEquals("Resuming copy of " + src + ": 1 files already copied\n"
+                + "Copied 1 files (1000 bytes) to " + target + ", skipped 1 already copied", output);
+        assertArrayEquals(data, Files.readAllBytes(target.resolve("big.bin")));
+        assertEquals("kept", Files.readString(target.resolve("done.txt")));
+        assertFalse(Files.exists(tempDir.resolve("artifactsCopy.cp-journal")));
+    }
+
+}
\ No newline at end of file
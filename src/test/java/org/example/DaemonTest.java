@@ -0,0 +1,121 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+class DaemonTest {
+
+    @TempDir
+    static Path tempDir;
+    private static Daemon daemon;
+    private static Path socket;
+
+    @BeforeAll
+    static void setUpClass() throws IOException {
+        Files.createDirectories(tempDir.resolve("one"));
+        Files.createDirectories(tempDir.resolve("two"));
+        Files.writeString(tempDir.resolve("two/notes.txt"), "first\nsecond\n");
+        socket = tempDir.resolve("mycli.sock");
+        daemon = new Daemon(socket);
+        daemon.start();
+        Thread server = new Thread(() -> {
+            try {
+                daemon.serve();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        server.setDaemon(true);
+        server.start();
+    }
+
+    @AfterAll
+    static void tearDownClass() {
+        daemon.close();
+    }
+
+    // Send the lines as one client and return everything the daemon answered
+    private static String send(String lines) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            channel.write(ByteBuffer.wrap(lines.getBytes(StandardCharsets.UTF_8)));
+            channel.shutdownOutput();
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            while (channel.read(buffer) >= 0) {
+                if (!buffer.hasRemaining()) {
+                    fail("Answer too long");
+                }
+            }
+            return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8).replace("\r\n", "\n");
+        }
+    }
+
+    @Test
+    void testSessionsKeepTheirOwnDirectory() throws IOException {
+        Path before = MyCLI.currentDir;
+
+        String first = send("@cwd " + tempDir + "\ncd one\npwd\n");
+        String second = send("@cwd " + tempDir.resolve("two") + "\npwd; cat notes.txt\n");
+
+        assertTrue(first.endsWith(tempDir.resolve("one") + "\n"), first);
+        assertEquals(tempDir.resolve("two") + "\nfirst\nsecond\n", second);
+        assertEquals(before, MyCLI.currentDir);
+    }
+
+    // Read from the channel until the answer so far contains the text
+    private static String readUntil(SocketChannel channel, ByteBuffer buffer, String text) throws IOException {
+        while (true) {
+            String answer = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8).replace("\r\n", "\n");
+            if (answer.contains(text)) {
+                return answer;
+            }
+            if (channel.read(buffer) < 0) {
+                fail("Connection closed before " + text + ": " + answer);
+            }
+        }
+    }
+
+    @Test
+    void testTailFollowsWhileWaitingForInput() {
+        // The stop waiter blocks reading the connection while tail writes to it
+        Path log = tempDir.resolve("two/follow.log");
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            Files.writeString(log, "old\n");
+            try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+                ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+                channel.write(ByteBuffer.wrap(("@cwd " + tempDir.resolve("two") + "\ntail -f follow.log\n").getBytes(StandardCharsets.UTF_8)));
+                readUntil(channel, buffer, "old\n");
+
+                Files.writeString(log, "new\n", StandardOpenOption.APPEND);
+                readUntil(channel, buffer, "new\n");
+
+                channel.write(ByteBuffer.wrap("\npwd\n".getBytes(StandardCharsets.UTF_8)));
+                String answer = readUntil(channel, buffer, tempDir.resolve("two") + "\n");
+                assertTrue(answer.contains("Following follow.log, press Enter to stop.\n"), answer);
+            }
+        });
+    }
+
+    @Test
+    void testExitEndsTheSession() throws IOException {
+        String answer = send("@cwd " + tempDir + "\nexit\npwd\n");
+
+        assertEquals("Exiting CLI...\n", answer);
+    }
+
+    @Test
+    void testSecondDaemonIsRefused() {
+        IOException e = assertThrows(IOException.class, () -> new Daemon(socket).start());
+        assertEquals("Another daemon is already listening.", e.getMessage());
+    }
+}
@@ -0,0 +1,138 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+class ExternalSortTest {
+
+    @TempDir
+    static Path tempDir;
+
+    @RegisterExtension
+    final CapturedOutput console = CapturedOutput.in(() -> tempDir);
+
+    @BeforeAll
+    static void setUpClass() throws IOException {
+        Files.createDirectory(tempDir.resolve("runs"));
+        Files.writeString(tempDir.resolve("access.log"),
+                "10.0.0.3 GET 200 512\n10.0.0.1 GET 404 17\n10.0.0.2 POST 200 2048\n10.0.0.1 GET 200 512\n");
+    }
+
+    private String output() {
+        return console.output();
+    }
+
+    // Sort the lines with the given options through the stage interface
+    private static List<String> sort(List<String> lines, ExternalSort.Options options) throws IOException {
+        List<String> sorted = new ArrayList<>();
+        try (ExternalSort sorter = new ExternalSort(options, new Pipeline.Stage() {
+            @Override
+            public void accept(String line) {
+                sorted.add(line);
+            }
+
+            @Override
+            public void finish() {
+            }
+        })) {
+            for (String line : lines) {
+                sorter.accept(line);
+            }
+            sorter.finish();
+        }
+        return sorted;
+    }
+
+    @Test
+    void testSortCommandWithKeys() {
+        MyCLI.execute("sort -rn -k 4 access.log");
+
+        assertEquals("10.0.0.2 POST 200 2048\n10.0.0.3 GET 200 512\n10.0.0.1 GET 200 512\n10.0.0.1 GET 404 17\n", output());
+    }
+
+    @Test
+    void testUniqueKeys() {
+        MyCLI.execute("cat access.log | sort -u -k 3");
+
+        assertEquals("10.0.0.1 GET 200 512\n10.0.0.1 GET 404 17\n", output());
+    }
+
+    @Test
+    void testSpillsRunsAndMerges() throws IOException {
+        Random random = new Random(42);
+        List<String> lines = IntStream.range(0, 20_000)
+                .mapToObj(i -> "line " + random.nextInt(1_000_000))
+                .collect(Collectors.toList());
+        ExternalSort.Options options = ExternalSort.Options.parse(
+                new String[]{"sort", "-S", "16K", "--parallel", "3", "-T", "runs"});
+
+        List<String> sorted = sort(lines, options);
+
+        List<String> expected = new ArrayList<>(lines);
+        expected.sort(Comparator.naturalOrder());
+        assertEquals(expected, sorted);
+        try (Stream<Path> runs = Files.list(tempDir.resolve("runs"))) {
+            assertEquals(0, runs.count(), "the run files are removed");
+        }
+    }
+
+    @Test
+    void testCarriageReturnsSurviveSpilledRuns() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            lines.add("line " + (i * 7919 % 200));
+        }
+        lines.add("z\ry");
+        lines.add("ends with\r");
+        ExternalSort.Options options = ExternalSort.Options.parse(new String[]{"sort", "-S", "1K", "-T", "runs"});
+
+        List<String> sorted = sort(lines, options);
+
+        List<String> expected = new ArrayList<>(lines);
+        expected.sort(Comparator.naturalOrder());
+        assertEquals(expected, sorted);
+    }
+
+    @Test
+    void testAttachedOptionValues() {
+        ExternalSort.Options options = ExternalSort.Options.parse(new String[]{"sort", "-k2", "-S512K", "-Truns", "access.log"});
+
+        assertEquals(2, options.key);
+        assertEquals(512 * 1024, options.memory);
+        assertEquals("runs", options.tempDir);
+        assertEquals(List.of("access.log"), options.files);
+    }
+
+    @Test
+    void testNumericOrder() throws IOException {
+        ExternalSort.Options options = ExternalSort.Options.parse(new String[]{"sort", "-n"});
+
+        assertEquals(List.of("-3", "x", "2", "10", "10.5"), sort(List.of("10", "2", "10.5", "-3", "x"), options));
+    }
+
+    @Test
+    void testInvalidOptions() {
+        MyCLI.execute("sort -S lots access.log");
+        MyCLI.execute("sort missing.log");
+
+        assertEquals("Error: Invalid value for -S: lots\nError: File not found: missing.log\n", output());
+    }
+
+    @Test
+    void testSortOutput() {
+        assertEquals("a\nb\nc", MyCLI.sortOutput("c\na\nb"));
+    }
+}
@@ -0,0 +1,124 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+class GlobTest {
+
+    @TempDir
+    static Path tempDir;
+
+    @RegisterExtension
+    final CapturedOutput console = CapturedOutput.in(() -> tempDir);
+
+    @BeforeAll
+    static void setUpClass() throws IOException {
+        // logs/app-1.log, app-2.log, app-3.log, .hidden.log, notes.txt and logs/old/2020/app-0.log
+        Path logs = Files.createDirectories(tempDir.resolve("logs/old/2020"));
+        for (int i = 1; i <= 3; i++) {
+            Files.writeString(tempDir.resolve("logs/app-" + i + ".log"), "log " + i + "\n");
+        }
+        Files.writeString(tempDir.resolve("logs/.hidden.log"), "hidden\n");
+        Files.writeString(tempDir.resolve("logs/notes.txt"), "notes\n");
+        Files.writeString(logs.resolve("app-0.log"), "log 0\n");
+    }
+
+    private static List<String> expand(String pattern) {
+        try (Stream<Path> paths = Glob.expand(tempDir, pattern)) {
+            return paths.map(path -> tempDir.relativize(path).toString()).sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    void testBraces() {
+        assertEquals(List.of("a.log", "b.log"), Glob.expandBraces("{a,b}.log"));
+        assertEquals(List.of("x1y", "x2y", "x3y"), Glob.expandBraces("x{1..3}y"));
+        assertEquals(List.of("3", "2"), Glob.expandBraces("{3..2}"));
+        assertEquals(List.of("ab1", "ab2", "ac"), Glob.expandBraces("a{b{1,2},c}"));
+        assertEquals(List.of("a{3}"), Glob.expandBraces("a{3}"), "a quantifier is not a brace expansion");
+    }
+
+    @Test
+    void testBraceLimits() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> Glob.expandBraces("x{1..100000000}"));
+        assertEquals("Brace range {1..100000000} has more than 100000 values", e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> Glob.expandBraces("{1..1000}{1..1000}"));
+        assertEquals(1000, Glob.expandBraces("{1..1000}").size());
+
+        MyCLI.execute("cat x{1..100000000}");
+        assertEquals("Error: Brace range {1..100000000} has more than 100000 values\n", console.output());
+    }
+
+    @Test
+    void testNeedsExpansion() {
+        assertTrue(Glob.needsExpansion("x{1..99999}"));
+        assertTrue(Glob.needsExpansion("{a,b}"));
+        assertTrue(Glob.needsExpansion("*.log"));
+        assertFalse(Glob.needsExpansion("a{3}"));
+        assertFalse(Glob.needsExpansion("{unbalanced"));
+        assertFalse(Glob.needsExpansion("notes.txt"));
+    }
+
+    @Test
+    void testTrailingDoubleStarMatchesFiles() {
+        assertEquals(List.of("logs", "logs/app-1.log", "logs/app-2.log", "logs/app-3.log", "logs/notes.txt",
+                "logs/old", "logs/old/2020", "logs/old/2020/app-0.log"), expand("logs/**"));
+    }
+
+    @Test
+    void testPatterns() {
+        assertEquals(List.of("logs/app-1.log", "logs/app-2.log", "logs/app-3.log"), expand("logs/*.log"));
+        assertEquals(List.of("logs/.hidden.log"), expand("logs/.*.log"));
+        assertEquals(List.of("logs/app-1.log", "logs/app-3.log"), expand("logs/app-{1,3}.log"));
+        assertEquals(List.of("logs/old/2020/app-0.log"), expand("logs/old/*/app-[0-9].log"));
+        assertEquals(List.of("logs/app-1.log", "logs/app-2.log", "logs/app-3.log", "logs/old/2020/app-0.log"),
+                expand("logs/**/app-*.log"));
+        assertEquals(List.of("logs/*.csv"), expand("logs/*.csv"), "a pattern that matches nothing is kept");
+    }
+
+    @Test
+    void testExpandArguments() {
+        String[] parts = Glob.expandArguments(tempDir, new String[]{"cat", "logs/app-*.log", "-n", "x{1,2}"});
+        assertArrayEquals(new String[]{"cat", "logs/app-1.log", "logs/app-2.log", "logs/app-3.log", "-n", "x1", "x2"}, parts);
+    }
+
+    @Test
+    void testLazyExpansionStopsEarly() throws IOException {
+        Path many = Files.createDirectories(tempDir.resolve("many"));
+        for (int i = 0; i < 2000; i++) {
+            Files.createFile(many.resolve("f" + i + ".tmp"));
+        }
+        try (Stream<Path> paths = Glob.expand(tempDir, "many/*.tmp")) {
+            assertEquals(5, paths.limit(5).count());
+        }
+    }
+
+    @Test
+    void testCatWithBraces() {
+        MyCLI.cat(Glob.expandArguments(tempDir, new String[]{"cat", "logs/app-{1,2}.log"}));
+        assertEquals("log 1\nlog 2\n", console.output());
+    }
+
+    @Test
+    void testRmWithGlob() throws IOException {
+        Path scratch = Files.createDirectories(tempDir.resolve("scratch"));
+        Files.createFile(scratch.resolve("a.tmp"));
+        Files.createFile(scratch.resolve("b.tmp"));
+        Files.createFile(scratch.resolve("keep.txt"));
+        MyCLI.currentDir = scratch;
+        MyCLI.execute("rm *.tmp");
+
+        assertFalse(Files.exists(scratch.resolve("a.tmp")));
+        assertFalse(Files.exists(scratch.resolve("b.tmp")));
+        assertTrue(Files.exists(scratch.resolve("keep.txt")));
+    }
+}
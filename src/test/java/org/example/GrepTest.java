@@ -0,0 +1,72 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+class GrepTest {
+
+    @TempDir
+    Path tempDir;
+
+    // Run grep with the given arguments over the text, as a file, and collect what it prints
+    private List<String> run(String text, String... args) throws IOException {
+        String[] command = new String[args.length + 1];
+        command[0] = "grep";
+        System.arraycopy(args, 0, command, 1, args.length);
+
+        List<String> output = new ArrayList<>();
+        Grep grep = Grep.compile(Grep.Options.parse(command));
+        Path file = Files.writeString(tempDir.resolve("input.txt"), text, grep.options().encoding);
+        try (LineScanner scanner = LineScanner.open(file, grep.options().encoding)) {
+            grep.search(scanner, "", output::add);
+        }
+        return output;
+    }
+
+    @Test
+    void testLiteralSearch() throws IOException {
+        String text = "abcabd\nxxabd\nab\nabdab\n";
+
+        // The literal fast path must find matches at the start, middle and end of lines
+        assertEquals(List.of("abcabd", "xxabd", "abdab"), run(text, "abd"));
+        assertEquals(List.of(), run(text, "abdd"));
+    }
+
+    @Test
+    void testIgnoreCaseAndInvert() throws IOException {
+        String text = "Error one\nall fine\nERROR two\n";
+
+        assertEquals(List.of("Error one", "ERROR two"), run(text, "-i", "error"));
+        assertEquals(List.of("all fine"), run(text, "-iv", "error"));
+    }
+
+    @Test
+    void testCountAndLineNumbers() throws IOException {
+        String text = "a1\nb2\na3\n";
+
+        assertEquals(List.of("2"), run(text, "-c", "a"));
+        assertEquals(List.of("1:a1", "3:a3"), run(text, "-n", "a"));
+    }
+
+    @Test
+    void testRegexPattern() throws IOException {
+        String text = "id=42\nid=x\nname=7\n";
+
+        assertEquals(List.of("id=42"), run(text, "id=[0-9]+"));
+        // -F turns the regex characters back into plain text
+        assertEquals(List.of(), run(text, "-F", "id=[0-9]+"));
+    }
+
+    @Test
+    void testInvalidRegex() {
+        assertThrows(IllegalArgumentException.class, () -> run("text", "(unclosed"));
+    }
+}
@@ -0,0 +1,95 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+class LineIndexCacheTest {
+
+    @TempDir
+    static Path tempDir;
+
+    @AfterAll
+    static void tearDownClass() {
+        System.clearProperty("mycli.lineindex.dir");
+    }
+
+    private static Path fileWithLines(String name, int count) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            content.append("entry ").append(i).append('\n');
+        }
+        Path file = tempDir.resolve(name);
+        Files.writeString(file, content);
+        return file;
+    }
+
+    @Test
+    void testSameFileSharesOneIndex() throws Exception {
+        Path file = fileWithLines("shared.txt", 3000);
+
+        LineIndex first = LineIndexCache.getComplete(file);
+        LineIndex second = LineIndexCache.get(file);
+
+        assertSame(first, second, "An unchanged file should not be indexed twice");
+        assertEquals(3000, first.newlineCount());
+    }
+
+    @Test
+    void testChangedFileIsIndexedAgain() throws Exception {
+        Path file = fileWithLines("changed.txt", 10);
+        LineIndex before = LineIndexCache.getComplete(file);
+
+        // Append lines and move the modification time so the key changes
+        Files.writeString(file, "one more\n", StandardOpenOption.APPEND);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+        LineIndex after = LineIndexCache.getComplete(file);
+
+        assertNotSame(before, after);
+        assertEquals(11, after.newlineCount());
+    }
+
+    @Test
+    void testSidecarIsReloaded() throws Exception {
+        Path sidecarDir = tempDir.resolve("sidecars");
+        System.setProperty("mycli.lineindex.dir", sidecarDir.toString());
+        try {
+            Path file = fileWithLines("persisted.txt", LineIndex.STRIDE * 2 + 5);
+            LineIndexCache.getComplete(file);
+
+            // The sidecar is written by the background builder once the index is complete
+            for (int i = 0; i < 100 && isEmpty(sidecarDir); i++) {
+                Thread.sleep(20);
+            }
+            assertFalse(isEmpty(sidecarDir), "A sidecar file should have been written");
+
+            // After forgetting the in-memory copy the index comes back from the sidecar
+            LineIndexCache.clear();
+            LineIndex reloaded = LineIndexCache.get(file);
+            assertTrue(reloaded.isComplete(), "A reloaded index is complete right away");
+            assertEquals(LineIndex.STRIDE * 2 + 5, reloaded.newlineCount());
+            long[] checkpoint = reloaded.checkpointBefore(LineIndex.STRIDE * 2 + 1);
+            assertEquals(LineIndex.STRIDE * 2, checkpoint[1]);
+            assertEquals("entry " + LineIndex.STRIDE * 2,
+                    Files.readString(file).substring((int) checkpoint[0]).split("\n")[0]);
+        } finally {
+            System.clearProperty("mycli.lineindex.dir");
+        }
+    }
+
+    private static boolean isEmpty(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return true;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.noneMatch(path -> path.toString().endsWith(".lidx"));
+        }
+    }
+}
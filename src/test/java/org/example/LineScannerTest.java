@@ -0,0 +1,132 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+class LineScannerTest {
+
+    @TempDir
+    static Path tempDir;
+
+    @RegisterExtension
+    final CapturedOutput console = CapturedOutput.in(() -> tempDir);
+
+    @BeforeAll
+    static void setUpClass() throws IOException {
+        // "café" in Latin-1, which is not valid UTF-8
+        Files.write(tempDir.resolve("latin1.log"), new byte[]{'c', 'a', 'f', (byte) 0xE9, '\n', 'E', 'R', 'R', '\r', '\n'});
+        Files.write(tempDir.resolve("cafes.log"), new byte[]{'c', 'a', 'f', (byte) 0xE9, '\n', 'E', 'R', 'R', '\n', 'c', 'a', 'f', (byte) 0xE9, '\n'});
+    }
+
+    private String output() {
+        return console.output();
+    }
+
+    private static List<String> lines(Path file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (LineScanner scanner = LineScanner.open(file, StandardCharsets.UTF_8)) {
+            while (scanner.next()) {
+                lines.add(scanner.text());
+            }
+        }
+        return lines;
+    }
+
+    @Test
+    void testLinesLongerThanTheBuffer() throws IOException {
+        String longLine = "x".repeat(200_000);
+        Path file = tempDir.resolve("long.txt");
+        Files.writeString(file, "first\r\n" + longLine + "\n\nlast");
+
+        assertEquals(List.of("first", longLine, "", "last"), lines(file));
+    }
+
+    @Test
+    void testMalformedInputIsReplaced() throws IOException {
+        assertEquals(List.of("caf\uFFFD", "ERR"), lines(tempDir.resolve("latin1.log")));
+    }
+
+    @Test
+    void testLineEndOffsets() throws IOException {
+        try (LineScanner scanner = LineScanner.open(tempDir.resolve("latin1.log"), StandardCharsets.ISO_8859_1)) {
+            assertTrue(scanner.next());
+            assertEquals(5, scanner.lineEnd());
+            assertEquals(4, scanner.length());
+            assertTrue(scanner.next());
+            assertEquals(10, scanner.lineEnd());
+            assertFalse(scanner.next());
+        }
+    }
+
+    @Test
+    void testEncodingOption() {
+        MyCLI.execute("cat --encoding latin1 latin1.log");
+        MyCLI.execute("grep --encoding ISO-8859-1 -n caf\u00E9 latin1.log");
+        MyCLI.execute("cat --encoding UTF-16 latin1.log");
+        MyCLI.execute("cat --encoding nope latin1.log");
+
+        String cafe = new String("caf\u00E9".getBytes()); // As printed in the default charset
+        assertEquals(cafe + "\nERR\n1:" + cafe + "\nError: Unsupported encoding: UTF-16\nError: Unknown encoding: nope\n", output());
+    }
+
+    @Test
+    void testSortUniqAndTopReadLatin1() {
+        MyCLI.execute("sort --encoding latin1 cafes.log");
+        MyCLI.execute("uniq -c --encoding latin1 cafes.log");
+        MyCLI.execute("top 1 --encoding latin1 cafes.log");
+
+        String cafe = new String("caf\u00E9".getBytes());
+        assertEquals("ERR\n" + cafe + "\n" + cafe + "\n"
+                + "      1 " + cafe + "\n      1 ERR\n      1 " + cafe + "\n"
+                + "      2 " + cafe + "\n", output());
+    }
+
+    @Test
+    void testUndecodableBytesDoNotFailSortUniqOrTop() {
+        // Without --encoding the Latin-1 byte is replaced, as in cat and grep
+        MyCLI.execute("sort latin1.log");
+        MyCLI.execute("uniq latin1.log");
+        MyCLI.execute("top 2 latin1.log");
+
+        assertFalse(output().contains("Error"), output());
+        assertEquals(6, output().split("\n").length, output());
+    }
+
+    @Test
+    void testMissingEncodingName() {
+        MyCLI.execute("less --encoding");
+        MyCLI.execute("uniq latin1.log --encoding");
+
+        assertEquals("Error: Missing name for --encoding\nError: Missing name for --encoding\n", output());
+    }
+
+    @Test
+    void testGrepForTextTheEncodingLacks() throws IOException {
+        Files.write(tempDir.resolve("question.log"), "what?\n".getBytes(StandardCharsets.ISO_8859_1));
+
+        MyCLI.execute("grep -c --encoding latin1 \u20AC question.log");
+        MyCLI.execute("grep -c -F --encoding latin1 ? question.log");
+
+        assertEquals("0\n1\n", output());
+    }
+
+    @Test
+    void testByteLevelGrepCountsWithoutDecoding() throws IOException {
+        Grep grep = Grep.compile(Grep.Options.parse(new String[]{"grep", "-c", "ERR", "latin1.log"}));
+        List<String> output = new ArrayList<>();
+        try (LineScanner scanner = LineScanner.open(tempDir.resolve("latin1.log"), StandardCharsets.UTF_8)) {
+            grep.search(scanner, "", output::add);
+        }
+
+        assertEquals(List.of("1"), output);
+    }
+}
@@ -0,0 +1,73 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+class MetadataCacheTest {
+
+    @TempDir
+    static Path tempDir;
+
+    @RegisterExtension
+    final CapturedOutput console = CapturedOutput.in(() -> tempDir);
+
+    @BeforeAll
+    static void setUpClass() throws IOException {
+        // Created before anything watches tempDir, whose events would otherwise race with the cache
+        Files.createDirectory(tempDir.resolve("cached"));
+        Files.writeString(tempDir.resolve("cached").resolve("first.txt"), "1");
+        MetadataCache.setEnabled(true);
+    }
+
+    @AfterAll
+    static void tearDownClass() {
+        MetadataCache.setEnabled(false);
+    }
+
+    private String listing(Path directory) {
+        console.reset();
+        MyCLI.listDirectory(new String[]{"ls", directory.toString()});
+        return console.output();
+    }
+
+    @Test
+    void testListingIsServedFromCache() throws IOException {
+        Path directory = tempDir.resolve("cached");
+
+        assertEquals("first.txt\n", listing(directory));
+        assertNotNull(MetadataCache.listing(directory), "small listings are cached");
+        assertEquals("first.txt\n", listing(directory));
+    }
+
+    @Test
+    void testWatchInvalidatesChangedDirectory() throws Exception {
+        Path directory = Files.createDirectory(tempDir.resolve("watched"));
+        Files.writeString(directory.resolve("old.txt"), "1");
+        assertEquals("old.txt\n", listing(directory));
+
+        // A change made behind the CLI's back reaches the cache through the WatchService
+        Files.writeString(directory.resolve("new.txt"), "2");
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (MetadataCache.listing(directory) != null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(listing(directory).contains("new.txt"));
+    }
+
+    @Test
+    void testCommandsInvalidateWhatTheyChange() {
+        Path file = tempDir.resolve("touched.txt");
+        assertFalse(MetadataCache.exists(file));
+
+        MyCLI.createFile("touched.txt");
+        assertTrue(MetadataCache.exists(file), "touch drops the cached missing entry");
+        MyCLI.removeFile("touched.txt");
+        assertFalse(MetadataCache.exists(file));
+    }
+}
@@ -3,9 +3,14 @@ package org.example;
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.*;
 
+import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.nio.file.*;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Comparator;
 import java.util.stream.Collectors;
 import java.io.IOException;
@@ -563,5 +568,312 @@ class MyCLITest {
         // You will need to capture the output to validate it.
     }
 
+    @Test
+    void testPipeGrepIntoWordCount() throws IOException {
+        // Create a log file with a few matching lines
+        Path logFile = testDir.resolve("pipeLog.txt");
+        Files.writeString(logFile, "ERROR disk full\nINFO all good\nERROR network down now\n");
+
+        // Chain two stages after cat
+        MyCLI.cat(new String[]{"cat", logFile.toString(), "|", "grep", "ERROR", "|", "wc"});
+
+        // Only the two ERROR lines should be counted
+        String output = outputStream.toString();
+        assertTrue(output.contains("Line Count: 2"), "wc should count the two matching lines");
+        assertTrue(output.contains("Word Count: 7"), "wc should count the words of the matching lines");
+    }
+
+    @Test
+    void testPipeGrepPrintsMatchingLines() throws IOException {
+        // Create a log file with one matching line
+        Path logFile = testDir.resolve("pipeGrep.txt");
+        Files.writeString(logFile, "first line\nsecond ERROR line\nthird line\n");
+
+        MyCLI.cat(new String[]{"cat", logFile.toString(), "|", "grep", "ERROR"});
+
+        assertEquals("second ERROR line", outputStream.toString().trim());
+    }
+
+    @Test
+    void testPipeUnsupportedCommand() throws IOException {
+        Path logFile = testDir.resolve("pipeUnsupported.txt");
+        Files.writeString(logFile, "content");
+
+        MyCLI.cat(new String[]{"cat", logFile.toString(), "|", "nope"});
+
+        assertEquals("Error: Unsupported command after pipe.", outputStream.toString().trim());
+    }
+
+    @Test
+    void testWordCountAllCounts() throws IOException {
+        // Create a file with known counts, including a line without a trailing newline
+        Path file = testDir.resolve("wcFile.txt");
+        Files.writeString(file, "one two  three\n\tfour\nfive");
+
+        MyCLI.wc(new String[]{"wc", file.toString()});
+
+        String output = outputStream.toString().replace("\r\n", "\n");
+        assertEquals("Line Count: 2\nWord Count: 5\nByte Count: 25", output.trim());
+    }
+
+    @Test
+    void testWordCountSelectedFlags() throws IOException {
+        Path file = testDir.resolve("wcFlags.txt");
+        Files.writeString(file, "alpha beta\ngamma\n");
+
+        // Combined flags select lines and bytes only
+        MyCLI.wc(new String[]{"wc", "-lc", file.toString()});
+
+        String output = outputStream.toString().replace("\r\n", "\n");
+        assertEquals("Line Count: 2\nByte Count: 17", output.trim());
+    }
+
+    @Test
+    void testWordCountInvalidOption() {
+        MyCLI.wc(new String[]{"wc", "-x", "file.txt"});
+
+        assertEquals("Error: Invalid option for wc: -x", outputStream.toString().trim());
+    }
+
+    @Test
+    void testRedirectionKeepsBytesExactly() throws IOException {
+        // CRLF line endings and a missing final newline must survive the copy untouched
+        Path inputFile = testDir.resolve("crlfInput.txt");
+        byte[] content = "first\r\nsecond\r\nno newline".getBytes();
+        Files.write(inputFile, content);
+        Path outputFile = testDir.resolve("crlfOutput.txt");
+
+        MyCLI.cat(new String[]{"cat", inputFile.toString(), ">", outputFile.toString()});
+        assertArrayEquals(content, Files.readAllBytes(outputFile));
+
+        // Appending adds the same bytes again after the existing ones
+        MyCLI.cat(new String[]{"cat", inputFile.toString(), ">>", outputFile.toString()});
+        byte[] doubled = new byte[content.length * 2];
+        System.arraycopy(content, 0, doubled, 0, content.length);
+        System.arraycopy(content, 0, doubled, content.length, content.length);
+        assertArrayEquals(doubled, Files.readAllBytes(outputFile));
+    }
+
+    @Test
+    void testRedirectionToSameFile() throws IOException {
+        Path file = testDir.resolve("sameFile.txt");
+        Files.writeString(file, "keep me");
+
+        MyCLI.cat(new String[]{"cat", file.toString(), ">", file.toString()});
+
+        // The file must not have been truncated
+        assertEquals("Error: Input file is the same as the output file.", outputStream.toString().trim());
+        assertEquals("keep me", Files.readString(file));
+    }
+
+    @Test
+    void testRedirectionFromMissingFileKeepsOutput() throws IOException {
+        Path output = testDir.resolve("keptOutput.txt");
+        Files.writeString(output, "keep me");
+
+        MyCLI.cat(new String[]{"cat", testDir.resolve("missingInput.txt").toString(), ">", output.toString()});
+
+        // The output file must not have been truncated or written to
+        assertEquals("Error: Source file not found.", outputStream.toString().trim());
+        assertEquals("keep me", Files.readString(output));
+    }
+
+    @Test
+    void testCatLargeFileThroughBufferedOutput() throws IOException {
+        // More than one output buffer worth of lines
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            content.append("line number ").append(i).append('\n');
+        }
+        Path file = testDir.resolve("largeCat.txt");
+        Files.writeString(file, content);
+
+        MyCLI.cat(new String[]{"cat", file.toString()});
+
+        // Every byte must arrive in order
+        assertEquals(content.toString(), outputStream.toString().replace("\r\n", "\n"));
+    }
+
+    @Test
+    void testPipeGrepWithOptions() throws IOException {
+        Path logFile = testDir.resolve("pipeGrepOptions.txt");
+        Files.writeString(logFile, "error low\nall good\nERROR high\n");
+
+        // Case-insensitive search with line numbers
+        MyCLI.cat(new String[]{"cat", logFile.toString(), "|", "grep", "-in", "error"});
+
+        String output = outputStream.toString().replace("\r\n", "\n");
+        assertEquals("1:error low\n3:ERROR high", output.trim());
+    }
+
+    @Test
+    void testGrepMultipleFiles() throws IOException {
+        Path first = testDir.resolve("grepFirst.txt");
+        Path second = testDir.resolve("grepSecond.txt");
+        Files.writeString(first, "match here\nnothing\n");
+        Files.writeString(second, "nothing\nanother match\n");
+
+        MyCLI.grep(new String[]{"grep", "-c", "match", first.toString(), second.toString()});
+
+        // With several files every result is prefixed by its file name
+        String output = outputStream.toString().replace("\r\n", "\n");
+        assertEquals(first + ":1\n" + second + ":1", output.trim());
+    }
+
+    @Test
+    void testRecursiveGrepSorted() throws IOException {
+        // A small tree with matches in nested directories
+        Path root = testDir.resolve("grepTree");
+        Files.createDirectories(root.resolve("b/inner"));
+        Files.createDirectories(root.resolve("a"));
+        Files.writeString(root.resolve("a/one.log"), "ERROR a1\nok\nERROR a2\n");
+        Files.writeString(root.resolve("b/inner/two.log"), "ERROR b\n");
+        Files.writeString(root.resolve("b/clean.log"), "all good\n");
+        Files.writeString(root.resolve("top.log"), "ERROR top\n");
+
+        MyCLI.grep(new String[]{"grep", "-r", "--sort", "--threads", "3", "ERROR", root.toString()});
+
+        // Files are reported in name order and each file's lines stay together
+        String output = outputStream.toString().replace("\r\n", "\n");
+        String expected = root.resolve("a/one.log") + ":ERROR a1\n"
+                + root.resolve("a/one.log") + ":ERROR a2\n"
+                + root.resolve("b/inner/two.log") + ":ERROR b\n"
+                + root.resolve("top.log") + ":ERROR top";
+        assertEquals(expected, output.trim());
+    }
+
+    @Test
+    void testRecursiveGrepUnorderedFindsEverything() throws IOException {
+        Path root = testDir.resolve("grepTreeUnordered");
+        Files.createDirectories(root.resolve("sub"));
+        for (int i = 0; i < 30; i++) {
+            Files.writeString(root.resolve("sub/file" + i + ".log"), "x\nhit " + i + "\ny\nhit again " + i + "\n");
+        }
+
+        MyCLI.grep(new String[]{"grep", "-r", "hit", root.toString()});
+
+        // Every match is printed and both lines of a file are printed next to each other
+        String[] lines = outputStream.toString().replace("\r\n", "\n").trim().split("\n");
+        assertEquals(60, lines.length);
+        for (int i = 0; i < lines.length; i += 2) {
+            String file = lines[i].substring(0, lines[i].indexOf(':'));
+            assertTrue(lines[i + 1].startsWith(file + ":"), "lines of one file should stay grouped");
+        }
+    }
+
+    @Test
+    void testRecursiveGrepSortedWithMoreFilesThanPermits() throws IOException {
+        // A large first file still being searched while the small files behind it use up every permit
+        Path root = testDir.resolve("grepTreeSlowHead");
+        Files.createDirectories(root);
+        String filler = "nothing to see here, just a filler line\n".repeat(1000);
+        try (BufferedWriter writer = Files.newBufferedWriter(root.resolve("a-large.log"))) {
+            for (int i = 0; i < 500; i++) {
+                writer.write(filler);
+            }
+            writer.write("hit large\n");
+        }
+        for (int i = 0; i < 40; i++) {
+            Files.writeString(root.resolve(String.format("b-small%02d.log", i)), "hit " + i + "\n");
+        }
+
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () ->
+                MyCLI.grep(new String[]{"grep", "-r", "--sort", "--threads", "1", "hit", root.toString()}));
+
+        String[] lines = outputStream.toString().replace("\r\n", "\n").trim().split("\n");
+        assertEquals(41, lines.length);
+        assertEquals(root.resolve("a-large.log") + ":hit large", lines[0]);
+        assertEquals(root.resolve("b-small39.log") + ":hit 39", lines[40]);
+    }
+
+    @Test
+    void testRecursiveGrepSortedSkipsSymlinkLoop() throws IOException {
+        Path root = testDir.resolve("grepTreeLoop");
+        Files.createDirectories(root.resolve("d"));
+        Files.writeString(root.resolve("d/app.log"), "ERROR once\n");
+        Files.createSymbolicLink(root.resolve("d/loop"), Path.of(".."));
+
+        MyCLI.grep(new String[]{"grep", "-r", "--sort", "ERROR", root.toString()});
+        String sorted = outputStream.toString().replace("\r\n", "\n");
+        outputStream.reset();
+        MyCLI.grep(new String[]{"grep", "-r", "ERROR", root.toString()});
+
+        // Both walks see the file once
+        assertEquals(root.resolve("d/app.log") + ":ERROR once\n", sorted);
+        assertEquals(sorted, outputStream.toString().replace("\r\n", "\n"));
+    }
+
+    @Test
+    void testWordCountLinesOnly() throws IOException {
+        // wc -l is answered from the shared line index
+        Path file = testDir.resolve("wcLines.txt");
+        Files.writeString(file, "a\nb\nc\nno newline");
+
+        MyCLI.wc(new String[]{"wc", "-l", file.toString()});
+
+        assertEquals("Line Count: 3", outputStream.toString().trim());
+    }
+
+    @Test
+    void testListTopBySize() throws IOException {
+        Path dir = testDir.resolve("lsTop");
+        Files.createDirectories(dir);
+        Files.writeString(dir.resolve("small.txt"), "1");
+        Files.writeString(dir.resolve("large.txt"), "1234567890");
+        Files.writeString(dir.resolve("medium.txt"), "12345");
+        Files.writeString(dir.resolve(".hidden"), "12345678901234567890");
+
+        // Only the two largest visible entries, largest first
+        MyCLI.listDirectory(new String[]{"ls", dir.toString(), "-S", "--top", "2"});
+
+        String output = outputStream.toString().replace("\r\n", "\n").trim();
+        assertEquals("large.txt\nmedium.txt", output);
+    }
+
+    @Test
+    void testListLongFormatAndOptions() throws IOException {
+        Path dir = testDir.resolve("lsLong");
+        Files.createDirectories(dir.resolve("sub"));
+        Files.writeString(dir.resolve("data.txt"), "hello");
+
+        MyCLI.listDirectory(new String[]{"ls", "-l", "--top", "5", dir.toString()});
+
+        String[] lines = outputStream.toString().replace("\r\n", "\n").trim().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].matches("-\\S{9} +5 \\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2} data\\.txt"), lines[0]);
+        assertTrue(lines[1].startsWith("d") && lines[1].endsWith(" sub"), lines[1]);
+
+        outputStream.reset();
+        MyCLI.listDirectory(new String[]{"ls", "-x"});
+        assertEquals("Invalid option for ls: -x", outputStream.toString().trim());
+    }
+
+    @Test
+    void testListLongFormatSkipsEntryRemovedWhileListing() throws IOException {
+        Path dir = testDir.resolve("lsRemoved");
+        Files.createDirectories(dir);
+        Files.writeString(dir.resolve("kept.txt"), "hello");
+
+        // The directory read returns gone.txt, which no longer exists by the time it is stat'ed
+        List<Path> read = List.of(dir.resolve("gone.txt"), dir.resolve("kept.txt"));
+        DirectoryStream<Path> stream = new DirectoryStream<>() {
+            @Override
+            public Iterator<Path> iterator() {
+                return read.iterator();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        List<DirectoryLister.Entry> entries = new ArrayList<>();
+        new DirectoryLister(DirectoryLister.Options.parse(new String[]{"ls", "-l"}), null)
+                .readEntries(stream, true, entries::add);
+
+        assertEquals(1, entries.size());
+        assertEquals(Path.of("kept.txt"), entries.get(0).name);
+        assertEquals(5, entries.get(0).attributes.size());
+    }
+
 
 }
\ No newline at end of file
@@ -0,0 +1,87 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+class PagerTest {
+
+    @TempDir
+    static Path tempDir;
+
+    @RegisterExtension
+    final CapturedOutput console = CapturedOutput.of();
+
+    // File with lines "line 1" .. "line <count>"
+    private static Path numberedFile(String name, int count, boolean finalNewline) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 1; i <= count; i++) {
+            content.append("line ").append(i);
+            if (i < count || finalNewline) {
+                content.append('\n');
+            }
+        }
+        Path file = tempDir.resolve(name);
+        Files.writeString(file, content);
+        return file;
+    }
+
+    // Run the pager with the given keys and return the first line of every page shown
+    private String[] firstLinesOfPages(Path file, String... keys) throws IOException {
+        Deque<String> input = new ArrayDeque<>(Arrays.asList(keys));
+        try (Output out = Output.stdout(false); Pager pager = new Pager(file, 10, out, input::poll)) {
+            pager.run();
+        }
+
+        String[] lines = console.output().split("\n");
+        StringBuilder firsts = new StringBuilder();
+        boolean pageStart = true;
+        for (String line : lines) {
+            if (line.startsWith("-- lines")) {
+                pageStart = true;
+            } else if (pageStart) {
+                firsts.append(line).append('\n');
+                pageStart = false;
+            }
+        }
+        return firsts.toString().split("\n");
+    }
+
+    @Test
+    void testPagingForwardBackAndEnd() throws IOException {
+        Path file = numberedFile("paging.txt", 30, true);
+
+        String[] pages = firstLinesOfPages(file, "", "b", "G", "g", "q");
+
+        assertArrayEquals(new String[]{"line 1", "line 11", "line 1", "line 21", "line 1"}, pages);
+    }
+
+    @Test
+    void testLastPageWithoutFinalNewline() throws IOException {
+        Path file = numberedFile("noNewline.txt", 25, false);
+
+        String[] pages = firstLinesOfPages(file, "G", "b", "q");
+
+        // The last page ends with line 25 even though it has no newline
+        assertArrayEquals(new String[]{"line 1", "line 16", "line 6"}, pages);
+        assertTrue(console.output().contains("line 25"));
+    }
+
+    @Test
+    void testJumpToLineBeyondFirstCheckpoint() throws IOException {
+        // More lines than one index stride so the jump uses a checkpoint
+        Path file = numberedFile("jump.txt", LineIndex.STRIDE * 3 + 17, true);
+
+        String[] pages = firstLinesOfPages(file, "2500", "3000", "", "q");
+
+        assertArrayEquals(new String[]{"line 1", "line 2500", "line 3000", "line 3010"}, pages);
+    }
+}
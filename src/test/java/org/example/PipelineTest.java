@@ -0,0 +1,142 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+class PipelineTest {
+
+    // Plugin registered in META-INF/services of the tests: a prompt that takes a moment to appear
+    public static class Prompt implements Command {
+        @Override
+        public String name() {
+            return "prompt";
+        }
+
+        @Override
+        public void execute(String[] args) throws InterruptedException {
+            Thread.sleep(200);
+            Session.current().out().print("Continue? ");
+        }
+
+        @Override
+        public String help() {
+            return "  prompt - Ask without ending the line";
+        }
+    }
+
+    @TempDir
+    static Path tempDir;
+
+    @RegisterExtension
+    final CapturedOutput console = CapturedOutput.in(() -> tempDir);
+
+    @BeforeAll
+    static void setUpClass() throws IOException {
+        Files.writeString(tempDir.resolve("app.log"), "ERROR one\nINFO two\nERROR three\n");
+        Files.writeString(tempDir.resolve("db.log"), "INFO\n");
+        Files.writeString(tempDir.resolve("notes.txt"), "nothing\n");
+        Files.writeString(tempDir.resolve("big.txt"), "filler\n".repeat(20_000));
+    }
+
+    private String output() {
+        return console.output();
+    }
+
+    @Test
+    void testAnyCommandIntoFilters() {
+        MyCLI.execute("ls | grep .log | wc -l");
+
+        assertEquals("Line Count: 2\n", output());
+    }
+
+    @Test
+    void testFiltersInTheMiddle() {
+        MyCLI.execute("cat *.log | grep ERROR | cat | grep -c three");
+
+        assertEquals("1\n", output());
+    }
+
+    @Test
+    void testCommandIgnoresPipedLines() {
+        MyCLI.execute("cat app.log | pwd");
+
+        assertEquals(tempDir + "\n", output());
+    }
+
+    @Test
+    void testUnknownStage() {
+        MyCLI.execute("ls | nope | wc");
+
+        assertEquals("Error: Unsupported command after pipe.\n", output());
+    }
+
+    @Test
+    void testEarlyEndWithUnterminatedLastLine() {
+        // pwd ends at once without reading, like head; prompt then leaves a line without ending to a
+        // cancelled pipe, and cat, which nobody reads, must still be stopped
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> MyCLI.execute("cat big.txt | prompt | pwd"));
+
+        assertEquals(tempDir + "\n", output());
+    }
+
+    @Test
+    void testProducerBlocksWhilePipeIsFull() throws Exception {
+        LinePipe pipe = new LinePipe(4);
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 100; i++) {
+                    pipe.put("line " + i);
+                }
+                pipe.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+
+        producer.join(200);
+        assertTrue(producer.isAlive(), "the producer waits for the consumer");
+        List<String> lines = new ArrayList<>();
+        while (pipe.take(lines)) {
+            assertTrue(lines.size() <= 100);
+        }
+        producer.join();
+        assertEquals(100, lines.size());
+        assertEquals("line 99", lines.get(99));
+    }
+
+    @Test
+    void testCancelStopsProducer() throws Exception {
+        LinePipe pipe = new LinePipe(2);
+        List<Throwable> thrown = new ArrayList<>();
+        Thread producer = new Thread(() -> {
+            byte[] line = "endless\r\n".getBytes();
+            try (LinePipe.Writer writer = new LinePipe.Writer(pipe)) {
+                while (true) {
+                    writer.write(line, 0, line.length);
+                }
+            } catch (RuntimeException e) {
+                thrown.add(e);
+            }
+        });
+        producer.start();
+
+        List<String> lines = new ArrayList<>();
+        assertTrue(pipe.take(lines));
+        assertEquals("endless", lines.get(0));
+        pipe.cancel();
+        producer.join(TimeUnit.SECONDS.toMillis(5));
+        assertFalse(producer.isAlive());
+        assertInstanceOf(LinePipe.Broken.class, thrown.get(0));
+    }
+}
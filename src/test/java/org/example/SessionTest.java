@@ -0,0 +1,124 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+class SessionTest {
+
+    @TempDir
+    static Path tempDir;
+
+    @BeforeAll
+    static void setUpClass() throws IOException {
+        for (int i = 0; i < 4; i++) {
+            Path dir = Files.createDirectories(tempDir.resolve("user" + i));
+            Files.writeString(dir.resolve("own" + i + ".txt"), "user " + i + "\n");
+        }
+    }
+
+    private static String text(ByteArrayOutputStream bytes) {
+        return bytes.toString(StandardCharsets.UTF_8).replace("\r\n", "\n");
+    }
+
+    @Test
+    void testSessionsRunConcurrently() throws Exception {
+        Path before = MyCLI.currentDir;
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            int user = i;
+            results.add(pool.submit(() -> {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                PrintStream out = new PrintStream(bytes, true, StandardCharsets.UTF_8);
+                Session session = new Session(tempDir, out, out, new Scanner(""));
+                start.await();
+                for (int round = 0; round < 50; round++) {
+                    session.call(() -> MyCLI.execute("cd user" + user));
+                    session.call(() -> MyCLI.execute("ls"));
+                    session.call(() -> MyCLI.execute("cd .."));
+                }
+                session.call(() -> MyCLI.execute("cat user" + user + "/own" + user + ".txt"));
+                return text(bytes);
+            }));
+        }
+        start.countDown();
+
+        for (int i = 0; i < 4; i++) {
+            String output = results.get(i).get();
+            assertEquals(50, output.split("\nown" + i + ".txt\n", -1).length - 1, output);
+            assertTrue(output.endsWith("user " + i + "\n"), output);
+            for (int other = 0; other < 4; other++) {
+                if (other != i) {
+                    assertFalse(output.contains("own" + other + ".txt"), output);
+                }
+            }
+        }
+        pool.shutdown();
+        assertEquals(before, MyCLI.currentDir);
+    }
+
+    @Test
+    void testEnvironmentIsPerSession() {
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        Session one = new Session(tempDir, new PrintStream(first, true), null, null);
+        Session two = new Session(tempDir, new PrintStream(second, true), null, null);
+
+        one.call(() -> MyCLI.execute("export STAGE=canary REGION=eu"));
+        one.call(() -> MyCLI.execute("export broken"));
+        one.call(() -> MyCLI.execute("env"));
+        two.call(() -> MyCLI.execute("env"));
+
+        assertTrue(text(first).contains("Error: Invalid variable assignment: broken\n"));
+        assertTrue(text(first).contains("\nREGION=eu\n"));
+        assertTrue(text(first).contains("\nSTAGE=canary\n"));
+        assertFalse(text(second).contains("STAGE=canary"));
+        assertNull(System.getenv("STAGE"));
+    }
+
+    @Test
+    void testProcessSessionIsTheStaticState() {
+        Path before = MyCLI.currentDir;
+        try {
+            MyCLI.currentDir = tempDir;
+            assertEquals(tempDir, Session.current().directory());
+            Session.current().setDirectory(tempDir.resolve("user1"));
+            assertEquals(tempDir.resolve("user1"), MyCLI.currentDir);
+        } finally {
+            MyCLI.currentDir = before;
+        }
+    }
+
+    @Test
+    void testDerivedSessionsShareTheInput() {
+        Session session = new Session(tempDir, System.out, System.err, new Scanner("first\nsecond\n"));
+        Session piped = session.withOutput(new PrintStream(new ByteArrayOutputStream()));
+
+        // The command in the pipeline ends while its line is being read, so the line stays unread
+        boolean[] ended = {false};
+        assertNull(piped.readLine(() -> {
+            boolean done = ended[0];
+            ended[0] = true;
+            return done;
+        }));
+        assertEquals("first", session.readLine());
+        assertEquals("second", piped.readLine());
+        assertNull(session.readLine());
+    }
+}
@@ -0,0 +1,128 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class TailTest {
+
+    @TempDir
+    static Path tempDir;
+
+    @RegisterExtension
+    final CapturedOutput console = CapturedOutput.of();
+
+    private String output() {
+        return console.output();
+    }
+
+    @Test
+    void testLastLines() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 1; i <= 100_000; i++) {
+            content.append("row ").append(i).append('\n');
+        }
+        Path file = tempDir.resolve("many.txt");
+        Files.writeString(file, content);
+
+        MyCLI.tail(new String[]{"tail", "-n", "3", file.toString()});
+
+        assertEquals("row 99998\nrow 99999\nrow 100000\n", output());
+    }
+
+    @Test
+    void testLastLinesWithoutFinalNewline() throws IOException {
+        Path file = tempDir.resolve("short.txt");
+        Files.writeString(file, "a\nb\nc");
+
+        MyCLI.tail(new String[]{"tail", "-n", "2", file.toString()});
+        assertEquals("b\nc", output());
+
+        // Asking for more lines than the file has prints all of it
+        console.reset();
+        MyCLI.tail(new String[]{"tail", "-n", "50", file.toString()});
+        assertEquals("a\nb\nc", output());
+    }
+
+    @Test
+    void testFollowAppendsAndRotation() throws Exception {
+        Path file = tempDir.resolve("live.log");
+        Files.writeString(file, "old 1\nold 2\n");
+
+        AtomicBoolean stop = new AtomicBoolean(false);
+        Thread follower = new Thread(() -> {
+            try (Output out = Output.stdout(false)) {
+                Tail tail = new Tail(out);
+                FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                long position = tail.printLastLines(file, channel, 1);
+                tail.follow(file, channel, position, stop::get);
+            } catch (IOException e) {
+                fail(e);
+            }
+        });
+        follower.start();
+
+        try {
+            waitFor("old 2\n");
+
+            // New lines are picked up from where the last read stopped
+            Files.writeString(file, "new 3\n", StandardOpenOption.APPEND);
+            waitFor("new 3\n");
+
+            // Rotate: move the log away and start a fresh one under the same name
+            Files.move(file, tempDir.resolve("live.log.1"));
+            Files.writeString(file, "fresh 1\n");
+            waitFor("fresh 1\n");
+        } finally {
+            stop.set(true);
+            follower.join(5000);
+        }
+
+        String output = output();
+        assertFalse(output.contains("old 1"), "Only the last line should be printed at first");
+        assertTrue(output.contains("has been replaced"), "Rotation should be reported");
+    }
+
+    @Test
+    void testLineAfterFollowEndedIsNotSwallowed() throws Exception {
+        Path file = tempDir.resolve("stopped.log");
+        Files.writeString(file, "only\n");
+        PipedOutputStream typed = new PipedOutputStream();
+        Session session = new Session(tempDir, System.out, System.out, new Scanner(new PipedInputStream(typed)));
+
+        // End following without Enter, as an error would
+        Thread follower = new Thread(() -> session.call(() -> {
+            MyCLI.tail(new String[]{"tail", "-f", "stopped.log"});
+            return null;
+        }));
+        follower.start();
+        waitFor("only\n");
+        follower.interrupt();
+        follower.join(5000);
+        assertFalse(follower.isAlive());
+
+        // The waiter of tail is still reading, the line must reach the next reader all the same
+        typed.write("pwd\n".getBytes());
+        typed.flush();
+        assertEquals("pwd", assertTimeoutPreemptively(Duration.ofSeconds(10), () -> session.readLine()));
+    }
+
+    private void waitFor(String text) throws InterruptedException {
+        for (int i = 0; i < 200 && !output().contains(text); i++) {
+            Thread.sleep(25);
+        }
+        assertTrue(output().contains(text), "Expected output: " + text);
+    }
+}
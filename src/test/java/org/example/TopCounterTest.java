@@ -0,0 +1,97 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+class TopCounterTest {
+
+    @TempDir
+    static Path tempDir;
+
+    @RegisterExtension
+    final CapturedOutput console = CapturedOutput.in(() -> tempDir);
+
+    @BeforeAll
+    static void setUpClass() throws IOException {
+        Files.createDirectory(tempDir.resolve("parts"));
+        Files.writeString(tempDir.resolve("access.log"), "10.0.0.1 GET /\n10.0.0.2 GET /a\n10.0.0.1 POST /b\n"
+                + "10.0.0.3 GET /\n10.0.0.1 GET /c\n10.0.0.2 GET /d\n");
+    }
+
+    private String output() {
+        return console.output();
+    }
+
+    @Test
+    void testTopField() {
+        MyCLI.execute("top 2 -f 1 access.log");
+
+        assertEquals("      3 10.0.0.1\n      2 10.0.0.2\n", output());
+    }
+
+    @Test
+    void testTopInPipeline() {
+        MyCLI.execute("cat access.log | grep GET | top 1 -f 3");
+
+        assertEquals("      2 /\n", output());
+    }
+
+    @Test
+    void testUniqCountsAdjacentLines() {
+        MyCLI.execute("cat access.log | sort -k 1 | uniq -c");
+        MyCLI.execute("uniq -x access.log");
+
+        assertTrue(output().startsWith("      1 10.0.0.1 GET /\n      1 10.0.0.1 GET /c\n"), output());
+        assertTrue(output().endsWith("Error: Invalid option for uniq: -x\n"));
+    }
+
+    @Test
+    void testSpillsPartitions() throws IOException {
+        // Many distinct keys through a tiny budget, with a few frequent ones among them
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 30_000; i++) {
+            lines.add("client-" + i);
+            if (i % 1000 == 0) {
+                lines.add("héavy-" + (i % 3));
+            }
+        }
+        List<String> top = new ArrayList<>();
+        TopCounter.Options options = TopCounter.Options.parse(new String[]{"top", "3", "-S", "64K", "-T", "parts"});
+        try (TopCounter counter = new TopCounter(options, new Pipeline.Stage() {
+            @Override
+            public void accept(String line) {
+                top.add(line);
+            }
+
+            @Override
+            public void finish() {
+            }
+        })) {
+            for (String line : lines) {
+                counter.accept(line);
+            }
+            counter.finish();
+        }
+
+        assertEquals(List.of("     10 héavy-0", "     10 héavy-1", "     10 héavy-2"), top);
+        try (Stream<Path> parts = Files.list(tempDir.resolve("parts"))) {
+            assertEquals(0, parts.count(), "the partition files are removed");
+        }
+    }
+
+    @Test
+    void testUsage() {
+        MyCLI.execute("top");
+
+        assertEquals("Error: Usage: top <N> [-f field] [-S size] [-T dir] [--encoding name] [file...]\n", output());
+    }
+}
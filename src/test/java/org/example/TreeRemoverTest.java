@@ -0,0 +1,81 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+class TreeRemoverTest {
+
+    @TempDir
+    static Path tempDir;
+
+    @RegisterExtension
+    final CapturedOutput console = CapturedOutput.in(() -> tempDir);
+
+    private String output() {
+        return console.output().trim();
+    }
+
+    @Test
+    void testRemoveTreeInParallel() throws IOException {
+        // 3 directories with 600 files each, more than two batches per directory
+        Path cache = tempDir.resolve("cache");
+        for (int d = 0; d < 3; d++) {
+            Path dir = Files.createDirectories(cache.resolve("d" + d + "/inner"));
+            for (int i = 0; i < 600; i++) {
+                Files.write(dir.resolve("f" + i), new byte[]{1, 2});
+            }
+        }
+        Path outside = Files.writeString(tempDir.resolve("target.txt"), "keep");
+        Files.createSymbolicLink(cache.resolve("link"), outside);
+
+        TreeRemover.Summary summary = new TreeRemover(4, 2).remove(cache);
+
+        assertFalse(Files.exists(cache));
+        assertTrue(Files.exists(outside), "links are removed, not followed");
+        assertEquals(1801, summary.files.get());
+        assertEquals(7, summary.directories.get());
+        assertEquals(3600 + outside.toString().length(), summary.bytes.get(), "a link takes the length of its target");
+        assertTrue(summary.errors.isEmpty());
+    }
+
+    @Test
+    void testRemoveCommandPrintsSummary() throws IOException {
+        Path build = tempDir.resolve("build");
+        Files.createDirectories(build.resolve("classes"));
+        Files.write(build.resolve("classes/A.class"), new byte[100]);
+        Files.write(build.resolve("out.jar"), new byte[50]);
+
+        MyCLI.remove(new String[]{"rm", "-r", build.toString()});
+
+        assertTrue(output().matches("Removed 2 files and 2 directories, freed 150 bytes in \\d+ ms"), output());
+        assertFalse(Files.exists(build));
+    }
+
+    @Test
+    void testRemoveRefusesCurrentDirectory() throws IOException {
+        Path project = tempDir.resolve("project");
+        Path inner = Files.createDirectories(project.resolve("src"));
+        MyCLI.currentDir = inner;
+        MyCLI.remove(new String[]{"rm", "-r", project.toString()});
+
+        assertEquals("Error: Refusing to remove " + project + ", it contains the current directory.", output());
+        assertTrue(Files.exists(inner));
+    }
+
+    @Test
+    void testRemoveDirectoryAndParents() throws IOException {
+        Files.createDirectories(tempDir.resolve("a/b/c"));
+        Files.writeString(tempDir.resolve("x.txt"), "x");
+        MyCLI.removeDirectoryAndParents("a/b/c");
+
+        assertEquals("Directory removed: a/b/c\nDirectory removed: a/b\nDirectory removed: a", output());
+        assertFalse(Files.exists(tempDir.resolve("a")));
+        assertTrue(Files.exists(tempDir), "only the directories named are removed");
+    }
+}
@@ -0,0 +1,99 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+class TreeWalkerTest {
+
+    @TempDir
+    static Path tempDir;
+
+    @RegisterExtension
+    final CapturedOutput console = CapturedOutput.of();
+
+    @BeforeAll
+    static void setUpClass() throws IOException {
+        // tree/a/one (100 bytes), tree/a/deep/two (2000 bytes), tree/b/three (10 bytes), tree/.hidden (5 bytes)
+        Path tree = tempDir.resolve("tree");
+        Files.createDirectories(tree.resolve("a/deep"));
+        Files.createDirectories(tree.resolve("b"));
+        Files.write(tree.resolve("a/one"), new byte[100]);
+        Files.write(tree.resolve("a/deep/two"), new byte[2000]);
+        Files.write(tree.resolve("b/three"), new byte[10]);
+        Files.write(tree.resolve(".hidden"), new byte[5]);
+    }
+
+    private String output() {
+        return console.output();
+    }
+
+    @Test
+    void testTotalsAreAggregatedBottomUp() {
+        TreeWalker walker = new TreeWalker(4, Integer.MAX_VALUE, 1, true, false);
+        TreeWalker.Node root = walker.walk(tempDir.resolve("tree"));
+
+        assertEquals(2115, root.bytes);
+        assertEquals(4, root.files);
+        assertEquals(3, root.directories);
+        assertEquals(2, root.children.size(), "only nodes up to the keep depth are kept");
+        for (TreeWalker.Node child : root.children) {
+            assertTrue(child.children.isEmpty());
+            long expected = child.path.getFileName().toString().equals("a") ? 2100 : 10;
+            assertEquals(expected, child.bytes);
+        }
+        assertTrue(root.subtreeNanos >= root.listNanos);
+        assertEquals(4, walker.slowest().size());
+        assertTrue(walker.errors().isEmpty());
+    }
+
+    @Test
+    void testMaxDepthStopsReading() {
+        TreeWalker walker = new TreeWalker(2, 1, Integer.MAX_VALUE, false, true);
+        TreeWalker.Node root = walker.walk(tempDir.resolve("tree"));
+
+        assertEquals(110, root.bytes, "a/deep is not read and .hidden is skipped");
+        assertEquals(3, root.directories);
+        assertEquals(2, root.entries.size());
+    }
+
+    @Test
+    void testDiskUsageOutput() {
+        Path tree = tempDir.resolve("tree");
+        MyCLI.du(new String[]{"du", "-h", "--max-depth", "1", tree.toString()});
+
+        String[] lines = output().trim().split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].equals("2.1K\t" + tree + "/a") || lines[0].equals("10\t" + tree + "/b"), lines[0]);
+        assertEquals("2.1K\t" + tree, lines[2]);
+
+        console.reset();
+        MyCLI.du(new String[]{"du", "-s", tree.toString()});
+        assertEquals("3\t" + tree, output().trim());
+    }
+
+    @Test
+    void testHumanSizes() {
+        assertEquals("512", DiskUsage.humanSize(512));
+        assertEquals("1.5K", DiskUsage.humanSize(1536));
+        assertEquals("20M", DiskUsage.humanSize(20L * 1024 * 1024));
+    }
+
+    @Test
+    void testRecursiveListing() {
+        Path tree = tempDir.resolve("tree");
+        MyCLI.listDirectory(new String[]{"ls", "-R", tree.toString()});
+
+        // Every directory gets a header followed by its entries
+        String output = output();
+        assertTrue(output.startsWith(tree + ":\n"), output);
+        assertTrue(output.contains(tree + "/a/deep:\ntwo\n"), output);
+        assertTrue(output.contains(tree + "/b:\nthree\n"), output);
+        assertFalse(output.contains(".hidden"));
+    }
+}
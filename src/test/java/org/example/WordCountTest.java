@@ -0,0 +1,82 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+class WordCountTest {
+
+    @TempDir
+    static Path tempDir;
+
+    @RegisterExtension
+    final CapturedOutput console = CapturedOutput.of();
+
+    @Test
+    void testParallelCountMatchesSequential() throws IOException {
+        // Words of different lengths so chunk boundaries land inside words and inside whitespace
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            content.append("word").append(i).append(i % 3 == 0 ? "  \t" : " ");
+            if (i % 7 == 0) {
+                content.append('\n');
+            }
+        }
+        Path file = tempDir.resolve("parallel.txt");
+        Files.writeString(file, content);
+
+        WordCount sequential = WordCount.count(file);
+
+        // Try several tiny chunk sizes so words straddle many range boundaries
+        for (long chunkSize : new long[]{1, 3, 7, 64, 1000}) {
+            WordCount parallel = WordCount.countParallel(file, 4, chunkSize);
+            assertEquals(sequential.words, parallel.words, "words with chunk size " + chunkSize);
+            assertEquals(sequential.lines, parallel.lines, "lines with chunk size " + chunkSize);
+            assertEquals(sequential.bytes, parallel.bytes, "bytes with chunk size " + chunkSize);
+        }
+        assertEquals(500, sequential.words);
+    }
+
+    @Test
+    void testCombineStitchesWordAcrossBoundary() throws IOException {
+        // "hello" is split between the two ranges and must only count once
+        Path file = tempDir.resolve("stitch.txt");
+        Files.writeString(file, "say hello");
+
+        WordCount parallel = WordCount.countParallel(file, 2, 6);
+
+        assertEquals(2, parallel.words);
+    }
+
+    @Test
+    void testParallelOptionParsing() {
+        WordCount.Options options = WordCount.Options.parse(new String[]{"wc", "--parallel", "8", "-w", "big.log"});
+
+        assertEquals(8, options.parallelism);
+        assertTrue(options.words);
+        assertEquals("big.log", options.file);
+        assertThrows(IllegalArgumentException.class,
+                () -> WordCount.Options.parse(new String[]{"wc", "--parallel", "zero", "big.log"}));
+    }
+
+    @Test
+    void testLineCountHonoursParallel() throws Exception {
+        Path file = tempDir.resolve("lines.txt");
+        Files.writeString(file, "one\ntwo\nthree\n");
+
+        // Counted by the threads asked for, not by building the shared line index
+        MyCLI.wc(new String[]{"wc", "-l", "--parallel", "4", file.toString()});
+        assertEquals("Line Count: 3\n", console.output());
+        assertNull(LineIndexCache.peekComplete(file));
+
+        console.reset();
+        MyCLI.wc(new String[]{"wc", "-l", file.toString()});
+        assertEquals("Line Count: 3\n", console.output());
+        assertNotNull(LineIndexCache.peekComplete(file));
+    }
+}